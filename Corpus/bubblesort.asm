@@ -0,0 +1,99 @@
+/ Bubble sort of 48 words, ascending
+/ expect instructions 19033
+/ expect cycles 99286
+/ expect memory 100 00A7 030C 06DC 07D0 0AF7 0B1E 0DEA 11C7 1244 17C2 17DB 1B11
+/ expect memory 10C 1BA3 1F8B 2189 2206 2A04 2E11 2F09 30A8 35CF 3D60 3E45 421C
+/ expect memory 118 4398 4621 478A 47F6 4AF8 4D29 4F14 4FEB 512F 51C0 5443 548D
+/ expect memory 124 584E 5A9D 5C15 5DC2 5DD3 5FCF 60D5 625A 65FD 686E 6E96 6EC2
+        ORG 10
+        LDA N           / both loops run N - 1 times
+        CMA
+        INC
+        INC
+        STA CNT1
+OUTER,  LDA ADR
+        STA P
+        LDA CNT1
+        STA CNT2
+INNER,  LDA P           / Q = P, P = P + 1
+        STA Q
+        ISZ P
+        LDA Q I
+        STA A
+        LDA P I
+        STA B
+        CMA
+        INC
+        ADD A           / A - B
+        SPA
+        BUN NEXT
+        SZA
+        BUN SWAP
+        BUN NEXT
+SWAP,   LDA B
+        STA Q I
+        LDA A
+        STA P I
+NEXT,   ISZ CNT2
+        BUN INNER
+        ISZ CNT1
+        BUN OUTER
+        HLT
+N,      DEC 48
+ADR,    HEX 100
+CNT1,   DEC 0
+CNT2,   DEC 0
+P,      DEC 0
+Q,      DEC 0
+A,      DEC 0
+B,      DEC 0
+        ORG 100
+        DEC 22606
+        DEC 13775
+        DEC 16924
+        DEC 23573
+        DEC 25178
+        DEC 20459
+        DEC 19192
+        DEC 11793
+        DEC 28310
+        DEC 167
+        DEC 20244
+        DEC 23197
+        DEC 6082
+        DEC 21571
+        DEC 20928
+        DEC 8585
+        DEC 2846
+        DEC 24527
+        DEC 780
+        DEC 15941
+        DEC 3562
+        DEC 8075
+        DEC 17304
+        DEC 17953
+        DEC 8710
+        DEC 2807
+        DEC 10756
+        DEC 21645
+        DEC 28354
+        DEC 7075
+        DEC 2000
+        DEC 19753
+        DEC 26734
+        DEC 20783
+        DEC 1756
+        DEC 24789
+        DEC 18314
+        DEC 6107
+        DEC 12456
+        DEC 6929
+        DEC 18422
+        DEC 4551
+        DEC 4676
+        DEC 26109
+        DEC 24002
+        DEC 24019
+        DEC 15712
+        DEC 12041
+        END
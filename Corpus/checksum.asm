@@ -0,0 +1,93 @@
+/ Checksum of 64 words: C = (C shifted left) + word and S = the plain sum, both 16 bits
+/ expect instructions 709
+/ expect cycles 3801
+/ expect memory 24 0E55 2760
+        ORG 10
+        LDA PTRD
+        STA P
+        LDA NCNT
+        STA CNT
+LOOP,   LDA C
+        CLE
+        CIL
+        ADD P I
+        STA C
+        LDA S
+        ADD P I
+        STA S
+        ISZ P
+        ISZ CNT
+        BUN LOOP
+        HLT
+PTRD,   HEX 100
+P,      DEC 0
+CNT,    DEC 0
+NCNT,   DEC -64
+C,      DEC 0
+S,      DEC 0
+        ORG 100
+        HEX C88E
+        HEX D8AF
+        HEX C4BC
+        HEX 3C45
+        HEX DF9A
+        HEX 50CB
+        HEX 70A8
+        HEX 57C1
+        HEX 5B66
+        HEX 2EA7
+        HEX EF54
+        HEX AEFD
+        HEX C7F2
+        HEX 0E43
+        HEX ACC0
+        HEX 3DF9
+        HEX 713E
+        HEX 4B9F
+        HEX D4EC
+        HEX C0B5
+        HEX 634A
+        HEX 02BB
+        HEX 53D8
+        HEX B331
+        HEX 6A16
+        HEX 0F97
+        HEX D584
+        HEX 516D
+        HEX 11A2
+        HEX 0E33
+        HEX C5F0
+        HEX 9769
+        HEX A5EE
+        HEX 5A8F
+        HEX 511C
+        HEX 4125
+        HEX 32FA
+        HEX 10AB
+        HEX 6308
+        HEX CAA1
+        HEX 84C6
+        HEX 0C87
+        HEX A7B4
+        HEX 6FDD
+        HEX 2752
+        HEX EA23
+        HEX 8B20
+        HEX 2CD9
+        HEX 669E
+        HEX 057F
+        HEX 394C
+        HEX BD95
+        HEX 4EAA
+        HEX 7A9B
+        HEX 9E38
+        HEX 9E11
+        HEX AB76
+        HEX 2577
+        HEX 65E4
+        HEX 0A4D
+        HEX 0902
+        HEX A213
+        HEX FC50
+        HEX FE49
+        END
@@ -0,0 +1,70 @@
+/ Division by repeated subtraction: Q[i] = N[i] / D[i] and R[i] = N[i] mod D[i] for positive numbers
+/ expect instructions 63223
+/ expect cycles 328776
+/ expect memory 120 008E 0080 0000 0000 3039 0001
+/ expect memory 130 0006 007F 0007 0000 0000 0000
+        ORG 10
+        LDA PTRN
+        STA IN
+        LDA PTRD
+        STA ID
+        LDA PTRQ
+        STA IQ
+        LDA PTRR
+        STA IR
+        LDA NCNT
+        STA CNT
+NEXT,   LDA ID I        / NEGD = -D
+        CMA
+        INC
+        STA NEGD
+        CLA
+        STA Q
+        LDA IN I
+SUB,    ADD NEGD        / subtract D until the rest goes negative
+        SNA
+        BUN MORE
+        BUN DONE
+MORE,   ISZ Q
+        BUN SUB
+DONE,   STA T           / one D too many was taken
+        LDA ID I
+        ADD T
+        STA IR I
+        LDA Q
+        STA IQ I
+        ISZ IN
+        ISZ ID
+        ISZ IQ
+        ISZ IR
+        ISZ CNT
+        BUN NEXT
+        HLT
+PTRN,   HEX 100
+PTRD,   HEX 110
+PTRQ,   HEX 120
+PTRR,   HEX 130
+IN,     DEC 0
+ID,     DEC 0
+IQ,     DEC 0
+IR,     DEC 0
+NCNT,   DEC -6
+CNT,    DEC 0
+NEGD,   DEC 0
+Q,      DEC 0
+T,      DEC 0
+        ORG 100         / N
+        DEC 1000
+        DEC 32767
+        DEC 7
+        DEC 0
+        DEC 12345
+        DEC 500
+        ORG 110         / D
+        DEC 7
+        DEC 255
+        DEC 9
+        DEC 5
+        DEC 1
+        DEC 500
+        END
@@ -0,0 +1,35 @@
+/ Interrupt driven echo: every byte that comes in is written back out by the interrupt routine,
+/ the main loop only waits until all of them went through.
+/ The computer takes an interrupt right after ION, so the routine returns with interrupts off
+/ (an ION before BUN ZRO I would be interrupted again) and the main loop turns them back on.
+/ expect instructions 630
+/ expect cycles 3134
+/ input 150 48 65 6C 6C 6F 2C 20 77 6F 72 6C 64 21 0A
+/ expect output 48 65 6C 6C 6F 2C 20 77 6F 72 6C 64 21 0A
+/ expect memory 24 0000
+        ORG 0
+ZRO,    BUN MAIN        / return address of the interrupt, starts the program before the first one
+        BUN ISR
+        ORG 10
+MAIN,   ION
+        LDA CNT
+        SZA
+        BUN MAIN
+        HLT
+ISR,    STA SAC         / keep AC and E of the main loop
+        CIR
+        STA SE
+        SKI
+        BUN RET
+        INP
+        OUT
+        ISZ CNT
+        BUN RET
+RET,    LDA SE
+        CIL
+        LDA SAC
+        BUN ZRO I
+SAC,    DEC 0
+SE,     DEC 0
+CNT,    DEC -14
+        END
@@ -0,0 +1,34 @@
+/ Fibonacci: F(0) to F(23) into a table
+/ expect instructions 273
+/ expect cycles 1507
+/ expect memory 100 0000 0001 0001 0002 0003 0005 0008 000D 0015 0022 0037 0059
+/ expect memory 10C 0090 00E9 0179 0262 03DB 063D 0A18 1055 1A6D 2AC2 452F 6FF1
+        ORG 10
+        LDA PTRF
+        STA P
+        CLA
+        STA X           / X = F(n)
+        INC
+        STA Y           / Y = F(n + 1)
+        LDA NCNT
+        STA CNT
+LOOP,   LDA X
+        STA P I
+        ISZ P
+        ADD Y
+        STA T
+        LDA Y
+        STA X
+        LDA T
+        STA Y
+        ISZ CNT
+        BUN LOOP
+        HLT
+PTRF,   HEX 100
+P,      DEC 0
+X,      DEC 0
+Y,      DEC 0
+T,      DEC 0
+NCNT,   DEC -24
+CNT,    DEC 0
+        END
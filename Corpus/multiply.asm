@@ -0,0 +1,80 @@
+/ Multiply by shift and add: C[i] = A[i] * B[i] for 8 pairs of 8 bit numbers
+/ expect instructions 974
+/ expect cycles 4854
+/ expect memory 120 000F 00DD FE01 00C8 0000 0001 7530 0000
+        ORG 10
+        LDA PTRA
+        STA IA
+        LDA PTRB
+        STA IB
+        LDA PTRC
+        STA IC
+        LDA NCNT
+        STA CNT
+NEXT,   LDA IA I
+        STA MX
+        LDA IB I
+        STA MY
+        BSA MUL
+        LDA R
+        STA IC I
+        ISZ IA
+        ISZ IB
+        ISZ IC
+        ISZ CNT
+        BUN NEXT
+        HLT
+MUL,    HEX 0           / R = MX * MY, MY is taken as 8 bits
+        CLA
+        STA R
+        LDA MC
+        STA K
+ML,     LDA MY          / lowest bit of MY into E
+        CLE
+        CIR
+        STA MY
+        SZE
+        BUN MADD
+        BUN MSH
+MADD,   LDA MX
+        ADD R
+        STA R
+MSH,    LDA MX          / MX = MX * 2
+        CLE
+        CIL
+        STA MX
+        ISZ K
+        BUN ML
+        BUN MUL I
+PTRA,   HEX 100
+PTRB,   HEX 110
+PTRC,   HEX 120
+IA,     DEC 0
+IB,     DEC 0
+IC,     DEC 0
+NCNT,   DEC -8
+CNT,    DEC 0
+MX,     DEC 0
+MY,     DEC 0
+R,      DEC 0
+K,      DEC 0
+MC,     DEC -8
+        ORG 100         / A
+        DEC 3
+        DEC 17
+        DEC 255
+        DEC 100
+        DEC 0
+        DEC 1
+        DEC 200
+        DEC 99
+        ORG 110         / B
+        DEC 5
+        DEC 13
+        DEC 255
+        DEC 2
+        DEC 77
+        DEC 1
+        DEC 150
+        DEC 0
+        END
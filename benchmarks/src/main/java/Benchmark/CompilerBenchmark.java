@@ -0,0 +1,93 @@
+package Benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Compiler.LanguageCompiler;
+import Debugger.Logger;
+import Emulator.BasicComputer;
+import Exceptions.FileNotParsed;
+import Exceptions.InvalidSyntax;
+
+// The loaders and the assembler on the bubble sort, its .hex and .bin written once in a temporary directory
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompilerBenchmark {
+
+    private Path directory;
+    private String source;
+    private String hex;
+    private String bin;
+    private String scratch; // written by the compile benchmarks
+
+    private final BasicComputer loaded = new BasicComputer();
+
+    @Setup
+    public void setUp() throws Exception {
+        Logger.isLogging = false;
+
+        directory = Files.createTempDirectory("basic-computer-bench");
+        source = directory.resolve("sort.asm").toString();
+        hex = directory.resolve("sort.hex").toString();
+        bin = directory.resolve("sort.bin").toString();
+        scratch = directory.resolve("scratch").toString();
+
+        Files.writeString(Path.of(source), Programs.BUBBLE_SORT);
+        LanguageCompiler.compileToHEX(source, hex);
+        LanguageCompiler.compileToBIN(source, bin);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (Path file : Files.list(directory).toArray(Path[]::new))
+            Files.delete(file);
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public short loadMemoryFromBinaryFile() throws IOException, FileNotParsed {
+        LanguageCompiler.loadMemoryFromBinaryFile(bin, loaded);
+        return loaded.getMemory(0x10);
+    }
+
+    @Benchmark
+    public short loadMemoryFromHexFile() throws IOException, FileNotParsed {
+        LanguageCompiler.loadMemoryFromHexFile(hex, loaded);
+        return loaded.getMemory(0x10);
+    }
+
+    @Benchmark
+    public short[] assemble() throws IOException, InvalidSyntax {
+        return LanguageCompiler.assemble(new BufferedReader(new StringReader(Programs.BUBBLE_SORT)));
+    }
+
+    @Benchmark
+    public boolean compileToHEX() throws IOException, InvalidSyntax {
+        return LanguageCompiler.compileToHEX(source, scratch);
+    }
+
+    @Benchmark
+    public boolean compileToBIN() throws IOException, InvalidSyntax {
+        return LanguageCompiler.compileToBIN(source, scratch);
+    }
+}
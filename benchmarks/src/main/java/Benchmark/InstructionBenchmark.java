@@ -0,0 +1,74 @@
+package Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Debugger.Logger;
+import Emulator.BasicComputer;
+import Emulator.Register;
+
+// completeInstruction() per instruction class, in time per instruction. Memory is filled with one instruction
+// so PC just walks through it; for the interrupt class IEN is set before every call, which makes each call
+// an interrupt cycle (FGO is always set)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstructionBenchmark {
+
+    private static final int BATCH = 4096; // instructions per invocation
+
+    @Param({ "memoryReference", "register", "io", "interrupt" })
+    public String instructionClass;
+
+    private BasicComputer computer;
+    private boolean interrupt;
+
+    @Setup
+    public void setUp() {
+        Logger.isLogging = false;
+
+        short word;
+        switch (instructionClass) {
+            case "memoryReference":
+                word = 0x1FFF; // ADD FFF
+                break;
+            case "io":
+                word = (short) 0xF200; // SKI, FGI clear
+                break;
+            default:
+                word = 0x7200; // CMA
+                break;
+        }
+
+        computer = new BasicComputer(Programs.filled(word));
+        computer.setFGO(1);
+        interrupt = instructionClass.equals("interrupt");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long completeInstruction() {
+        long cycles = 0;
+        for (int i = 0; i < BATCH; i++) {
+            if (interrupt)
+                computer.setIEN(1);
+            cycles += computer.completeInstruction();
+        }
+        return cycles + computer.getRegister(Register.AC);
+    }
+}
@@ -0,0 +1,131 @@
+package Benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import Compiler.LanguageCompiler;
+import Exceptions.InvalidSyntax;
+
+// Guest programs the benchmarks run, assemble and load
+final class Programs {
+
+    // Sorts 32 words in descending order into ascending order, the worst case of a bubble sort
+    static final String BUBBLE_SORT = bubbleSort(32);
+
+    // Sums 200 products made by a shift and add subroutine called with BSA
+    static final String MULTIPLY = String.join("\n",
+            "        ORG 10",
+            "LOOP,   LDA X",
+            "        STA MX",
+            "        LDA Y",
+            "        STA MY",
+            "        BSA MUL",
+            "        LDA R",
+            "        ADD SUM",
+            "        STA SUM",
+            "        ISZ X",
+            "        ISZ CNT",
+            "        BUN LOOP",
+            "        HLT",
+            "MUL,    HEX 0           / R = MX * MY (8 bit MY)",
+            "        CLA",
+            "        STA R",
+            "        LDA MC",
+            "        STA K",
+            "ML,     LDA MY",
+            "        CLE",
+            "        CIR",
+            "        STA MY",
+            "        SZE",
+            "        BUN MADD",
+            "        BUN MSH",
+            "MADD,   LDA MX",
+            "        ADD R",
+            "        STA R",
+            "MSH,    LDA MX",
+            "        CLE",
+            "        CIL",
+            "        STA MX",
+            "        ISZ K",
+            "        BUN ML",
+            "        BUN MUL I",
+            "X,      DEC 3",
+            "Y,      DEC 25",
+            "MX,     DEC 0",
+            "MY,     DEC 0",
+            "R,      DEC 0",
+            "K,      DEC 0",
+            "SUM,    DEC 0",
+            "MC,     DEC -8",
+            "CNT,    DEC -200",
+            "        END");
+
+    private Programs() {
+    }
+
+    static short[] assemble(String source) throws IOException, InvalidSyntax {
+        return LanguageCompiler.assemble(new BufferedReader(new StringReader(source)));
+    }
+
+    // Memory holding the one word everywhere, so PC just walks through it
+    static short[] filled(short word) {
+        short[] memory = new short[4096];
+        Arrays.fill(memory, word);
+        return memory;
+    }
+
+    private static String bubbleSort(int words) {
+        StringBuilder source = new StringBuilder(String.join("\n",
+                "        ORG 10",
+                "        LDA N           / both loops run N - 1 times",
+                "        CMA",
+                "        INC",
+                "        INC",
+                "        STA CNT1",
+                "OUTER,  LDA ADR",
+                "        STA P",
+                "        LDA CNT1",
+                "        STA CNT2",
+                "INNER,  LDA P           / Q = P, P = P + 1",
+                "        STA Q",
+                "        ISZ P",
+                "        LDA Q I",
+                "        STA A",
+                "        LDA P I",
+                "        STA B",
+                "        CMA",
+                "        INC",
+                "        ADD A           / A - B",
+                "        SPA",
+                "        BUN NEXT",
+                "        SZA",
+                "        BUN SWAP",
+                "        BUN NEXT",
+                "SWAP,   LDA B",
+                "        STA Q I",
+                "        LDA A",
+                "        STA P I",
+                "NEXT,   ISZ CNT2",
+                "        BUN INNER",
+                "        ISZ CNT1",
+                "        BUN OUTER",
+                "        HLT",
+                "N,      DEC " + words,
+                "ADR,    HEX 100",
+                "CNT1,   DEC 0",
+                "CNT2,   DEC 0",
+                "P,      DEC 0",
+                "Q,      DEC 0",
+                "A,      DEC 0",
+                "B,      DEC 0",
+                "        ORG 100",
+                ""));
+
+        for (int i = words; i > 0; i--)
+            source.append("        DEC ").append(i * 37).append('\n');
+
+        return source.append("        END\n").toString();
+    }
+}
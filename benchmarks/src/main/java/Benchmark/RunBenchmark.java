@@ -0,0 +1,51 @@
+package Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Debugger.Logger;
+import Emulator.BasicComputer;
+import Emulator.Snapshot;
+
+// The batch loop on whole programs, one run from the loaded image to HLT per invocation, for comparison with
+// completeInstruction() (bubbleSort retires 9585 instructions, multiply 24001)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RunBenchmark {
+
+    @Param({ "bubbleSort", "multiply" })
+    public String program;
+
+    private BasicComputer computer;
+    private Snapshot start;
+
+    @Setup
+    public void setUp() throws Exception {
+        Logger.isLogging = false;
+
+        computer = new BasicComputer(
+                Programs.assemble(program.equals("bubbleSort") ? Programs.BUBBLE_SORT : Programs.MULTIPLY));
+        start = computer.snapshot();
+    }
+
+    @Benchmark
+    public long runUntilHalt() {
+        computer.restore(start);
+        return computer.runUntilHalt();
+    }
+}
@@ -0,0 +1,247 @@
+package Benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import Compiler.LanguageCompiler;
+import Debugger.Logger;
+import Emulator.BasicComputer;
+import Emulator.ProgramImage;
+import Emulator.TimedInputDevice;
+import Emulator.TimedOutputDevice;
+import Exceptions.InvalidSyntax;
+
+// Runs the guest programs of the Corpus directory, checks their results and golden counts and measures MIPS:
+//   java -cp <classes> Benchmark.Corpus [directory] [--quick] [--csv results.csv]
+// Every program states what it expects in comment lines, which the assembler skips:
+//   / expect instructions N        instructions retired up to HLT
+//   / expect cycles N              guest cycles up to HLT
+//   / expect memory AAA WWWW ...   words from hex address AAA on, when it halted
+//   / expect output BB ...         bytes written with OUT
+//   / input LATENCY BB ...         bytes for INP, one every LATENCY cycles after the last one was read
+//   / limit N                      instructions before giving up (100000000 if not given)
+// The output device is always there and ready right after each OUT (latency 0), like the farm's.
+// The cycles are checked twice, once from run() and once as the sum of completeInstruction() over every step.
+// The exit code is 1 if any program failed.
+public class Corpus {
+
+    private static final long DEFAULT_LIMIT = 100_000_000;
+
+    public static void main(String[] args) throws Exception {
+        Path directory = Path.of("Corpus");
+        Path csv = null;
+        boolean quick = false;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--quick"))
+                quick = true;
+            else if (args[i].equals("--csv"))
+                csv = Path.of(args[++i]);
+            else
+                directory = Path.of(args[i]);
+        }
+
+        Logger.isLogging = false;
+
+        List<Path> sources;
+        try (Stream<Path> files = Files.list(directory)) {
+            sources = files.filter(file -> file.toString().endsWith(".asm")).sorted().collect(Collectors.toList());
+        }
+
+        long measureNanos = (quick ? 50 : 500) * 1_000_000L;
+        List<String> rows = new ArrayList<String>();
+        int failed = 0;
+
+        System.out.printf(Locale.ROOT, "%-16s %-6s %14s %14s %10s%n", "program", "result", "instructions", "cycles",
+                "MIPS");
+
+        for (Path source : sources) {
+            String name = source.getFileName().toString().replaceFirst("\\.asm$", "");
+            Program program;
+            List<String> problems = new ArrayList<String>();
+
+            try {
+                program = Program.parse(Files.readString(source));
+            } catch (InvalidSyntax e) {
+                System.out.printf(Locale.ROOT, "%-16s FAIL   line %d: %s%n", name, e.getLine(), e.getMessage());
+                failed++;
+                continue;
+            }
+
+            BasicComputer computer = program.check(problems);
+            double mips = problems.isEmpty() ? program.measure(measureNanos) : 0;
+
+            System.out.printf(Locale.ROOT, "%-16s %-6s %14d %14d %10.2f%n", name, problems.isEmpty() ? "ok" : "FAIL",
+                    computer.getInstructionsRetired(), computer.getCyclesElapsed(), mips);
+            for (String problem : problems)
+                System.out.println("    " + problem);
+
+            if (!problems.isEmpty())
+                failed++;
+
+            rows.add(String.format(Locale.ROOT, "%s,%s,%d,%d,%.2f", name, problems.isEmpty() ? "ok" : "fail",
+                    computer.getInstructionsRetired(), computer.getCyclesElapsed(), mips));
+        }
+
+        if (csv != null) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(csv))) {
+                out.println("program,result,instructions,cycles,mips");
+                for (String row : rows)
+                    out.println(row);
+            }
+        }
+
+        System.out.println(sources.size() - failed + " of " + sources.size() + " programs ok");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    private static final class Program {
+        ProgramImage image;
+        long limit = DEFAULT_LIMIT;
+        long instructions = -1;
+        long cycles = -1;
+        byte[] input;
+        long inputLatency;
+        byte[] output; // null if not checked
+        final List<int[]> memory = new ArrayList<int[]>(); // { address, word, word, ... }
+
+        static Program parse(String source) throws IOException, InvalidSyntax {
+            Program program = new Program();
+            program.image = ProgramImage.of(LanguageCompiler.assemble(new BufferedReader(new StringReader(source))));
+
+            String[] lines = source.split("\n");
+            for (int i = 0; i < lines.length; i++) {
+                String line = lines[i].trim();
+                if (!line.startsWith("/"))
+                    continue;
+
+                String[] words = line.substring(1).trim().split("\\s+");
+                try {
+                    program.expect(words);
+                } catch (RuntimeException e) {
+                    throw new InvalidSyntax("Bad expectation: " + line, i + 1, 0);
+                }
+            }
+
+            return program;
+        }
+
+        private void expect(String[] words) {
+            if (words[0].equals("limit")) {
+                limit = Long.parseLong(words[1]);
+            } else if (words[0].equals("input")) {
+                inputLatency = Long.parseLong(words[1]);
+                input = bytes(words, 2);
+            } else if (words[0].equals("expect")) {
+                switch (words[1]) {
+                    case "instructions":
+                        instructions = Long.parseLong(words[2]);
+                        break;
+                    case "cycles":
+                        cycles = Long.parseLong(words[2]);
+                        break;
+                    case "output":
+                        output = bytes(words, 2);
+                        break;
+                    case "memory":
+                        int[] check = new int[words.length - 2];
+                        for (int j = 0; j < check.length; j++)
+                            check[j] = Integer.parseInt(words[j + 2], 16);
+                        memory.add(check);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(words[1]);
+                }
+            }
+        }
+
+        private static byte[] bytes(String[] words, int from) {
+            byte[] bytes = new byte[words.length - from];
+            for (int j = 0; j < bytes.length; j++)
+                bytes[j] = (byte) Integer.parseInt(words[from + j], 16);
+            return bytes;
+        }
+
+        // A computer at the start of the program with its devices
+        private BasicComputer start(TimedOutputDevice device) {
+            BasicComputer computer = new BasicComputer(image);
+            if (input != null)
+                computer.setInputDevice(new TimedInputDevice(input, inputLatency));
+            computer.setOutputDevice(device);
+            return computer;
+        }
+
+        // Runs the program once with run() and once step by step, returns the computer of the run
+        BasicComputer check(List<String> problems) {
+            TimedOutputDevice device = new TimedOutputDevice(0);
+            BasicComputer computer = start(device);
+            computer.run(limit);
+
+            if (!computer.isStopped())
+                problems.add("did not halt within " + limit + " instructions");
+
+            if (instructions < 0 || cycles < 0)
+                problems.add("no golden counts, they would be: / expect instructions "
+                        + computer.getInstructionsRetired() + " and / expect cycles " + computer.getCyclesElapsed());
+            if (instructions >= 0 && computer.getInstructionsRetired() != instructions)
+                problems.add("instructions " + computer.getInstructionsRetired() + ", expected " + instructions);
+            if (cycles >= 0 && computer.getCyclesElapsed() != cycles)
+                problems.add("cycles " + computer.getCyclesElapsed() + ", expected " + cycles);
+
+            for (int[] check : memory)
+                for (int j = 1; j < check.length; j++) {
+                    int address = check[0] + j - 1;
+                    int word = computer.getMemory(address) & 0xFFFF;
+                    if (word != check[j])
+                        problems.add(String.format(Locale.ROOT, "memory %03X = %04X, expected %04X", address, word,
+                                check[j]));
+                }
+
+            if (output != null && !Arrays.equals(output, device.getOutput()))
+                problems.add("output " + Arrays.toString(device.getOutput()) + ", expected "
+                        + Arrays.toString(output));
+
+            // the same program again, one completeInstruction() at a time
+            BasicComputer stepped = start(new TimedOutputDevice(0));
+
+            long steppedCycles = 0;
+            for (long step = 0; !stepped.isStopped() && step < 2 * limit; step++)
+                steppedCycles += stepped.completeInstruction();
+
+            if (steppedCycles != computer.getCyclesElapsed())
+                problems.add("completeInstruction() took " + steppedCycles + " cycles, run() "
+                        + computer.getCyclesElapsed());
+            if (!Arrays.equals(stepped.dumpMemory(), computer.dumpMemory()))
+                problems.add("completeInstruction() and run() end with different memory");
+
+            return computer;
+        }
+
+        // Host MIPS of whole runs from the start to HLT, measured for at least nanos after a warmup
+        double measure(long nanos) {
+            long end = System.nanoTime() + nanos / 2;
+            while (System.nanoTime() < end)
+                start(new TimedOutputDevice(0)).run(limit);
+
+            long retired = 0;
+            long begin = System.nanoTime();
+            long elapsed;
+            do {
+                retired += start(new TimedOutputDevice(0)).run(limit);
+                elapsed = System.nanoTime() - begin;
+            } while (elapsed < nanos);
+
+            return retired * 1e3 / elapsed;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package Compiler;
 
 public enum FileFormat {
-    BIN, HEX
+    BIN, HEX,
+    IMAGE // memory mapped machine, registers and memory (see Emulator.MappedMachine)
 }
@@ -6,10 +6,16 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import Debugger.Logger;
 import Emulator.BasicComputer;
+import Emulator.MappedMachine;
 import Exceptions.FileNotParsed;
 import Exceptions.InvalidSyntax;
 
@@ -47,7 +53,7 @@ public class LanguageCompiler {
         int i = 0;
 
         while ((line = lineBuffer.readLine()) != null) {
-            if (i > 4096) {
+            if (i >= 4096) {
                 Logger.Error("File not Parsed correctly (Max Memory reached)");
                 throw new FileNotParsed("File not Parsed correctly (Max Memory reached)");
             }
@@ -59,7 +65,7 @@ public class LanguageCompiler {
 
         lineBuffer.close();
 
-        if (i < 4097) {
+        if (i < 4096) {
             Logger.Error("File not Parsed correctly (Max Memory NOT reached)");
             throw new FileNotParsed("File not Parsed correctly (Max Memory NOT reached)");
         }
@@ -96,7 +102,7 @@ public class LanguageCompiler {
 
         while ((line = lineBuffer.readLine()) != null) {
             // if the hex file valid
-            if (i > 4096 || line.charAt(0) != ':') {
+            if (i >= 4096 || line.isEmpty() || line.charAt(0) != ':') {
                 Logger.Error("File not Parsed correctly (Max Memory reached)");
                 throw new FileNotParsed("File not Parsed correctly (Max Memory reached)");
             }
@@ -104,7 +110,7 @@ public class LanguageCompiler {
             line = line.substring(1);
 
             // check if data bytes are NOT 4 or if the line is generally parsed incorrectly
-            if (line.length() != 14 || line.substring(0, 2) != "04") {
+            if (line.length() != 14 || !line.startsWith("04")) {
                 Logger.Error("File not Parsed correctly (Size Mismatch)");
                 throw new FileNotParsed("File not Parsed correctly (Size Mismatch)");
             }
@@ -116,7 +122,7 @@ public class LanguageCompiler {
 
         lineBuffer.close();
 
-        if (i < 4097) {
+        if (i < 4096) {
             Logger.Error("File not Parsed correctly (Max Memory NOT reached)");
             throw new FileNotParsed("File not Parsed correctly (Max Memory NOT reached)");
         }
@@ -127,6 +133,250 @@ public class LanguageCompiler {
         return true;
     }
 
+    // Load the memory and registers from an IMAGE file, the computer gets a copy and the file is left as it is
+    public static boolean loadMemoryFromImageFile(String path, BasicComputer computer)
+            throws FileNotParsed, FileNotFoundException, IOException {
+
+        Logger.Declare("Loading Memory From IMAGE File");
+
+        if (!Files.isRegularFile(Paths.get(path))) {
+            Logger.Error("File at path: {" + path + "} is not found");
+            throw new FileNotFoundException("File at path: {" + path + "} is not found");
+        }
+
+        try (MappedMachine image = MappedMachine.open(Paths.get(path))) {
+            computer.restore(image.snapshot());
+        }
+
+        Logger.Declare("Memory Loaded From IMAGE File");
+        return true;
+    }
+
+    // Save the memory and registers of the computer as an IMAGE file
+    public static boolean saveImageFile(BasicComputer computer, String destination) throws IOException {
+        Logger.Declare("Saving IMAGE File");
+
+        try (MappedMachine image = MappedMachine.create(Paths.get(destination), computer.snapshot())) {
+            Logger.Declare("IMAGE File Saved At " + image.getPath());
+        }
+
+        return true;
+    }
+
+    // Assembles a source file straight into a memory image (see assemble(BufferedReader))
+    public static short[] assembleFile(String path) throws FileNotFoundException, IOException, InvalidSyntax {
+        return assembleFile(path, null);
+    }
+
+    // Also puts every label and its address into labels (unless it is null)
+    public static short[] assembleFile(String path, Map<String, Integer> labels)
+            throws FileNotFoundException, IOException, InvalidSyntax {
+        BufferedReader reader = null;
+
+        try {
+            reader = new BufferedReader(new FileReader(path));
+        } catch (FileNotFoundException e) {
+
+            Logger.Error("File at path: {" + path + "} is not found");
+            throw new FileNotFoundException("File at path: {" + path + "} is not found");
+        }
+
+        try {
+            return assemble(reader, labels);
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Two pass assembler for the usual Basic Computer syntax, one statement per line:
+    //   ORG hhh                 next word goes to hex address hhh
+    //   [LABEL,] LDA TARGET [I] memory instruction, TARGET is a label or a hex address
+    //   [LABEL,] CLA            register or I/O instruction
+    //   [LABEL,] DEC n / HEX n / BIN n   a data word
+    //   END                     end of the source (optional)
+    // Everything after a '/' is a comment. If address 0 is not used it gets a BUN to the first assembled word,
+    // so the computer (starting at 0) runs the program wherever it was put with ORG.
+    public static short[] assemble(BufferedReader reader) throws IOException, InvalidSyntax {
+        return assemble(reader, null);
+    }
+
+    // Also puts every label and its address into found (unless it is null)
+    public static short[] assemble(BufferedReader reader, Map<String, Integer> found)
+            throws IOException, InvalidSyntax {
+        Logger.Declare("Assembling Source");
+
+        List<String[]> statements = new ArrayList<String[]>();
+        List<Integer> lines = new ArrayList<Integer>();
+        List<Integer> addresses = new ArrayList<Integer>();
+        HashMap<String, Integer> labels = new HashMap<String, Integer>();
+
+        String line;
+        int address = 0;
+        int start = -1;
+
+        // first pass: split the lines and give every label its address
+        for (int i = 1; (line = reader.readLine()) != null; i++) {
+            int comment = line.indexOf('/');
+            if (comment >= 0)
+                line = line.substring(0, comment);
+
+            String label = null;
+            int comma = line.indexOf(',');
+            if (comma >= 0) {
+                label = line.substring(0, comma).trim().toUpperCase();
+                line = line.substring(comma + 1);
+
+                if (label.isEmpty() || label.indexOf(' ') >= 0 || label.indexOf('\t') >= 0) {
+                    Logger.Error("Assembly Found Errors (Invalid Label) at line " + i);
+                    throw new InvalidSyntax("Label should be a single word followed by ','", i, 0);
+                }
+                if (labels.containsKey(label)) {
+                    Logger.Error("Assembly Found Errors (Label Duplicated) at line " + i);
+                    throw new InvalidSyntax("Label Duplicated: " + label, i, 0);
+                }
+            }
+
+            String[] tokens = line.trim().toUpperCase().split("\\s+");
+            if (tokens[0].isEmpty()) {
+                if (label != null) {
+                    Logger.Error("Assembly Found Errors (Label Without Statement) at line " + i);
+                    throw new InvalidSyntax("Label Without Statement", i, 0);
+                }
+                continue;
+            }
+
+            if (tokens[0].equals("END"))
+                break;
+
+            if (tokens[0].equals("ORG")) {
+                if (label != null) {
+                    Logger.Error("Assembly Found Errors (Label On ORG) at line " + i);
+                    throw new InvalidSyntax("ORG can not have a label", i, 0);
+                }
+                address = parseNumber(tokens, 16, i);
+                if (address < 0 || address >= 4096) {
+                    Logger.Error("Assembly Found Errors (ORG Out Of Memory) at line " + i);
+                    throw new InvalidSyntax("ORG must be between 0 and FFF", i, 0);
+                }
+                continue;
+            }
+
+            if (address >= 4096) {
+                Logger.Error("Assembly Found Errors (Max Memory reached) at line " + i);
+                throw new InvalidSyntax("Program does not fit in memory", i, 0);
+            }
+
+            if (label != null)
+                labels.put(label, address);
+            if (start < 0)
+                start = address;
+
+            statements.add(tokens);
+            lines.add(i);
+            addresses.add(address++);
+        }
+
+        // second pass: encode every statement at its address
+        short[] memory = new short[4096];
+        boolean[] used = new boolean[4096];
+
+        for (int s = 0; s < statements.size(); s++) {
+            int at = addresses.get(s);
+            int i = lines.get(s);
+
+            if (used[at]) {
+                Logger.Error("Assembly Found Errors (Address Used Twice) at line " + i);
+                throw new InvalidSyntax("Address " + Integer.toHexString(at) + " used twice", i, 0);
+            }
+            used[at] = true;
+            memory[at] = encode(statements.get(s), labels, i);
+        }
+
+        if (start >= 0 && !used[0])
+            memory[0] = (short) (0x4000 | start);
+
+        if (found != null)
+            found.putAll(labels);
+
+        Logger.Declare("Assembly Complete");
+        return memory;
+    }
+
+    // Word for one statement of assemble()
+    private static short encode(String[] tokens, HashMap<String, Integer> labels, int line) throws InvalidSyntax {
+        switch (tokens[0]) {
+            case "DEC":
+                return (short) parseNumber(tokens, 10, line);
+            case "HEX":
+                return (short) parseNumber(tokens, 16, line);
+            case "BIN":
+                return (short) parseNumber(tokens, 2, line);
+            default:
+                break;
+        }
+
+        Object[] opCode = getOpCode(tokens[0]);
+        if (opCode == null) {
+            Logger.Error("Assembly Found Errors (Unknown Instruction Signature) at line " + line);
+            throw new InvalidSyntax("Unknown Instruction Signature: " + tokens[0], line, 0);
+        }
+
+        if (!opCode[1].equals("M")) {
+            if (tokens.length != 1) {
+                Logger.Error("Assembly Found Errors (Incorrect Structure) at line " + line);
+                throw new InvalidSyntax("Argument Structure for Non memory operation should be: [{INSTRUCTION}]",
+                        line, tokens[0].length());
+            }
+            return (short) (int) opCode[4];
+        }
+
+        if (tokens.length < 2 || tokens.length > 3 || (tokens.length == 3 && !tokens[2].equals("I"))) {
+            Logger.Error("Assembly Found Errors (Incorrect Structure) at line " + line);
+            throw new InvalidSyntax("Argument Structure For Memory operation should be: [{INSTRUCTION} {TARGET} {I}]",
+                    line, tokens[0].length());
+        }
+
+        Integer target = labels.get(tokens[1]);
+        if (target == null) {
+            try {
+                target = Integer.parseInt(tokens[1], 16);
+            } catch (NumberFormatException e) {
+                Logger.Error("Assembly Found Errors (Unknown Label) at line " + line);
+                throw new InvalidSyntax("Unknown Label: " + tokens[1], line, tokens[0].length() + 1);
+            }
+            if (target < 0 || target >= 4096) {
+                Logger.Error("Assembly Found Errors (Address Out Of Memory) at line " + line);
+                throw new InvalidSyntax("Address must be between 0 and FFF", line, tokens[0].length() + 1);
+            }
+        }
+
+        int code = tokens.length == 3 ? (int) opCode[4] : (int) opCode[3];
+        return (short) (code << 12 | target);
+    }
+
+    // The operand of ORG / DEC / HEX / BIN, which has to fit in a 16 bit word
+    private static int parseNumber(String[] tokens, int radix, int line) throws InvalidSyntax {
+        if (tokens.length != 2) {
+            Logger.Error("Assembly Found Errors (Incorrect Structure) at line " + line);
+            throw new InvalidSyntax(tokens[0] + " takes exactly one value", line, tokens[0].length());
+        }
+
+        int value;
+        try {
+            value = Integer.parseInt(tokens[1], radix);
+        } catch (NumberFormatException e) {
+            Logger.Error("Assembly Found Errors (Invalid Number) at line " + line);
+            throw new InvalidSyntax("Invalid Number: " + tokens[1], line, tokens[0].length() + 1);
+        }
+
+        if (value < -32768 || value > 0xFFFF) {
+            Logger.Error("Assembly Found Errors (Value Out Of Range) at line " + line);
+            throw new InvalidSyntax("Value does not fit in 16 bits: " + tokens[1], line, tokens[0].length() + 1);
+        }
+
+        return value;
+    }
+
     public static boolean checkSyntax(BufferedReader fileBuffer) throws IOException, InvalidSyntax {
         Logger.Declare("Checking Syntax");
 
@@ -259,284 +509,51 @@ public class LanguageCompiler {
         return true;
     }
 
-    public static boolean compileToHEX(String filePath, String destination) throws FileNotFoundException, IOException {
+    // Assembles the source at filePath (see assemble()) into a HEX file the HEX loader reads back:
+    // one record per word, ":04" + address + "00" + low byte + high byte + "00"
+    public static boolean compileToHEX(String filePath, String destination)
+            throws FileNotFoundException, IOException, InvalidSyntax {
 
         Logger.Declare("File Compile Started");
 
-        if (filePath == null) {
-            Logger.Error("Source File at path: {" + filePath + "} is not found");
-            throw new FileNotFoundException("File at path: {" + filePath + "} is not found");
-        }
-        if (destination == null) {
-            Logger.Error("Write File at path: {" + destination + "} is not found");
-            throw new FileNotFoundException("File at path: {" + destination + "} is not found");
-        }
-
-        String[] stringFile = new String[4096];
-
-        BufferedReader reader = null;
-
-        try {
-            reader = new BufferedReader(new FileReader(filePath));
-        } catch (FileNotFoundException e) {
-
-            Logger.Error("File at path: {" + filePath + "} is not found");
-            throw new FileNotFoundException("File at path: {" + filePath + "} is not found");
-        }
-
-        String readLine = reader.readLine();
-
-        // load the StringArray containing all the lines
-        for (int i = 0; (reader.readLine()) != null; i++) {
-            stringFile[i] = readLine;
-        }
-
-        reader.close();
-
-        String outputString = "";
-
-        // Write ORG command
-        {
-            int data = Integer.parseInt("4" + "000", 16) + Integer.parseInt(stringFile[0].split(" ")[1]);
-
-            String dataString = Integer.toHexString(data);
-
-            // correctly formating Data value
-            switch (dataString.length()) {
-                case 1:
-                    dataString = "0" + dataString + "00";
-                    break;
-                case 2:
-                    dataString = dataString + "00";
-                    break;
-                case 3:
-                    dataString = dataString.substring(1) + dataString.charAt(0);
-                    break;
-                case 4:
-                    dataString = dataString.substring(2) + dataString.substring(0, 2);
-                    break;
-                default:
-                    break;
-            }
-            outputString += ':' + "04" + "0000" + "00" + dataString + "00" + "\n";
-        }
-
-        int hlt = 0;
-
-        for (int i = 1; i < stringFile.length; i++) {
-            if (stringFile[i] == "HLT") {
-                hlt = i;
-                break;
-            }
-        }
-
-        // hashmap of variables defined in the code
-        HashMap<String, Integer> variables = new HashMap<String, Integer>();
-
-        for (int i = hlt + 1; i < stringFile.length; i++) {
-
-            String[] lineArray = stringFile[i].split(" ");
-
-            switch (lineArray[1]) {
-                case "DEC":
-                    variables.put(lineArray[0], Integer.parseInt(lineArray[2]));
-                    break;
-
-                case "HEX":
-                    variables.put(lineArray[0], Integer.parseInt(lineArray[2], 16));
-                    break;
-
-                case "BIN":
-                    variables.put(lineArray[0], Integer.parseInt(lineArray[2], 2));
-                    break;
-
-                default:
-                    break;
-            }
+        short[] memory = assembleFile(checkPaths(filePath, destination));
 
+        StringBuilder output = new StringBuilder(4096 * 16);
+        for (int address = 0; address < memory.length; address++) {
+            int word = memory[address] & 0xFFFF;
+            output.append(':').append("04").append(hex(address, 4)).append("00").append(hex(word & 0xFF, 2))
+                    .append(hex(word >>> 8, 2)).append("00").append('\n');
         }
 
-        for (int i = 1; i <= hlt; i++) {
-
-            String[] lineArray = stringFile[i].split(" ");
+        writeFile(destination, output);
 
-            Object[] opCode = getOpCode(lineArray[0].substring(0, lineArray[0].length() - 1));
-
-            int data;
-
-            if (opCode[1] == "M") {
-
-                if (variables.containsKey(lineArray[2]))
-                    data = Integer
-                            .parseInt(Integer.toHexString(
-                                    Integer.parseInt((lineArray.length == 2 ? opCode[3] : opCode[4]) + "")) + "000", 16)
-                            + Integer.parseInt(stringFile[0].split(" ")[1]);
-                else
-                    data = Integer
-                            .parseInt(Integer.toHexString(
-                                    Integer.parseInt((lineArray.length == 2 ? opCode[3] : opCode[4]) + "")) + "000", 16)
-                            + variables.get(lineArray[1]);
-
-                String dataString = Integer.toHexString(data);
-
-                // correctly formating Data value
-                switch (dataString.length()) {
-                    case 1:
-                        dataString = "0" + dataString + "00";
-                        break;
-                    case 2:
-                        dataString = dataString + "00";
-                        break;
-                    case 3:
-                        dataString = dataString.substring(1) + "0" + dataString.charAt(0);
-                        break;
-                    case 4:
-                        dataString = dataString.substring(2) + dataString.substring(0, 2);
-                        break;
-                    default:
-                        break;
-                }
-
-                String address = Integer.toHexString(i);
-                // correctly formating Address value
-                switch (address.length()) {
-                    case 1:
-                        address = "0" + dataString + "00";
-                        break;
-                    case 2:
-                        address = dataString + "00";
-                        break;
-                    case 3:
-                        address = dataString.substring(1) + "0" + dataString.charAt(0);
-                        break;
-                    case 4:
-                        address = dataString.substring(2) + dataString.substring(0, 2);
-                        break;
-                    default:
-                        break;
-                }
-                outputString += ':' + "04" + address + "00" + dataString + "00" + "\n";
-
-            } else {
-
-                data = Integer.parseInt(opCode[4] + "");
-
-                String dataString = Integer.toHexString(data);
-
-                // correctly formating Data value
-                switch (dataString.length()) {
-                    case 1:
-                        dataString = "0" + dataString + "00";
-                        break;
-                    case 2:
-                        dataString = dataString + "00";
-                        break;
-                    case 3:
-                        dataString = dataString.substring(1) + "0" + dataString.charAt(0);
-                        break;
-                    case 4:
-                        dataString = dataString.substring(2) + dataString.substring(0, 2);
-                        break;
-                    default:
-                        break;
-                }
-
-                String address = Integer.toHexString(i);
-                // correctly formating Address value
-                switch (address.length()) {
-                    case 1:
-                        address = "0" + dataString + "00";
-                        break;
-                    case 2:
-                        address = dataString + "00";
-                        break;
-                    case 3:
-                        address = dataString.substring(1) + "0" + dataString.charAt(0);
-                        break;
-                    case 4:
-                        address = dataString.substring(2) + dataString.substring(0, 2);
-                        break;
-                    default:
-                        break;
-                }
-                outputString += ':' + "04" + address + "00" + dataString + "00" + "\n";
-            }
-        }
-
-        for (int i = hlt + 1; i < stringFile.length; i++) {
-
-            String[] lineArray = stringFile[i].split(" ");
-
-            String dataString = lineArray[2];
-
-            if (lineArray[1] != "HEX")
-                switch (lineArray[1]) {
+        Logger.Declare("File Compile Complete");
+        return true;
+    }
 
-                    case "DEC":
-                        dataString = Integer.toHexString(Integer.parseInt(lineArray[2]));
-                        break;
+    // Assembles the source at filePath (see assemble()) into a BIN file, one 16 bit binary word per line
+    public static boolean compileToBIN(String filePath, String destination)
+            throws FileNotFoundException, IOException, InvalidSyntax {
 
-                    case "BIN":
-                        dataString = Integer.toHexString(Integer.parseInt(lineArray[2], 2));
-                        break;
-                    default:
-                        break;
-                }
+        Logger.Declare("File Compile Started");
 
-            // correctly formating Data value
-            switch (dataString.length()) {
-                case 1:
-                    dataString = "0" + dataString + "00";
-                    break;
-                case 2:
-                    dataString = dataString + "00";
-                    break;
-                case 3:
-                    dataString = dataString.substring(1) + "0" + dataString.charAt(0);
-                    break;
-                case 4:
-                    dataString = dataString.substring(2) + dataString.substring(0, 2);
-                    break;
-                default:
-                    break;
-            }
+        short[] memory = assembleFile(checkPaths(filePath, destination));
 
-            String address = Integer.toHexString(i);
-            // correctly formating Address value
-            switch (address.length()) {
-                case 1:
-                    address = "0" + dataString + "00";
-                    break;
-                case 2:
-                    address = dataString + "00";
-                    break;
-                case 3:
-                    address = dataString.substring(1) + "0" + dataString.charAt(0);
-                    break;
-                case 4:
-                    address = dataString.substring(2) + dataString.substring(0, 2);
-                    break;
-                default:
-                    break;
-            }
-            outputString += ':' + "04" + address + "00" + dataString + "00" + "\n";
+        StringBuilder output = new StringBuilder(4096 * 17);
+        for (short word : memory) {
+            String bits = Integer.toBinaryString(word & 0xFFFF);
+            for (int i = bits.length(); i < 16; i++)
+                output.append('0');
+            output.append(bits).append('\n');
         }
 
-        FileWriter writer = new FileWriter(destination);
-        BufferedWriter buffer = new BufferedWriter(writer);
-
-        buffer.write(outputString);
-
-        buffer.close();
+        writeFile(destination, output);
 
         Logger.Declare("File Compile Complete");
         return true;
     }
 
-    public static boolean compileToBIN(String filePath, String destination) throws FileNotFoundException, IOException {
-
-        Logger.Declare("File Compile Started");
-
+    private static String checkPaths(String filePath, String destination) throws FileNotFoundException {
         if (filePath == null) {
             Logger.Error("Source File at path: {" + filePath + "} is not found");
             throw new FileNotFoundException("File at path: {" + filePath + "} is not found");
@@ -545,173 +562,27 @@ public class LanguageCompiler {
             Logger.Error("Write File at path: {" + destination + "} is not found");
             throw new FileNotFoundException("File at path: {" + destination + "} is not found");
         }
+        return filePath;
+    }
 
-        String[] stringFile = new String[4096];
-
-        BufferedReader reader = null;
-
-        try {
-            reader = new BufferedReader(new FileReader(filePath));
-        } catch (FileNotFoundException e) {
-
-            Logger.Error("File at path: {" + filePath + "} is not found");
-            throw new FileNotFoundException("File at path: {" + filePath + "} is not found");
-        }
-
-        String readLine = reader.readLine();
-
-        // load the StringArray containing all the lines
-        for (int i = 0; (reader.readLine()) != null; i++) {
-            stringFile[i] = readLine;
-        }
-
-        reader.close();
-
-        String outputString = "";
-
-        // Write ORG command
-        {
-            int data = Integer.parseInt("4" + "000", 16) + Integer.parseInt(stringFile[0].split(" ")[1]);
-
-            String dataString = Integer.toBinaryString(data);
-
-            int datalength = 16 - dataString.length();
-
-            // correctly formating Data value
-            for (int i = 0; i < datalength; i++) {
-                dataString = "0" + dataString;
-            }
-            outputString += dataString + "\n";
-        }
-
-        int hlt = 0;
-
-        for (int i = 1; i < stringFile.length; i++) {
-            if (stringFile[i] == "HLT") {
-                hlt = i;
-                break;
-            }
-        }
-
-        // hashmap of variables defined in the code
-        HashMap<String, Integer> variables = new HashMap<String, Integer>();
-
-        for (int i = hlt + 1; i < stringFile.length; i++) {
-
-            String[] lineArray = stringFile[i].split(" ");
-
-            switch (lineArray[1]) {
-                case "DEC":
-                    variables.put(lineArray[0], Integer.parseInt(lineArray[2]));
-                    break;
-
-                case "HEX":
-                    variables.put(lineArray[0], Integer.parseInt(lineArray[2], 16));
-                    break;
-
-                case "BIN":
-                    variables.put(lineArray[0], Integer.parseInt(lineArray[2], 2));
-                    break;
-
-                default:
-                    break;
-            }
-
-        }
-
-        for (int i = 1; i <= hlt; i++) {
-
-            String[] lineArray = stringFile[i].split(" ");
-
-            Object[] opCode = getOpCode(lineArray[0].substring(0, lineArray[0].length() - 1));
-
-            int data;
-
-            if (opCode[1] == "M") {
-
-                if (variables.containsKey(lineArray[2]))
-                    data = Integer
-                            .parseInt(Integer.toHexString(
-                                    Integer.parseInt((lineArray.length == 2 ? opCode[3] : opCode[4]) + "")) + "000", 16)
-                            + Integer.parseInt(stringFile[0].split(" ")[1]);
-                else
-                    data = Integer
-                            .parseInt(Integer.toHexString(
-                                    Integer.parseInt((lineArray.length == 2 ? opCode[3] : opCode[4]) + "")) + "000", 16)
-                            + variables.get(lineArray[1]);
-
-                String dataString = Integer.toBinaryString(data);
-
-                int datalength = 16 - dataString.length();
-
-                // correctly formating Data value
-                for (int j = 0; j < datalength; i++) {
-                    dataString = "0" + dataString;
-                }
-                outputString += dataString + "\n";
-
-            } else {
-
-                data = Integer.parseInt(opCode[4] + "");
-
-                String dataString = Integer.toBinaryString(data);
-
-                int datalength = 16 - dataString.length();
-
-                // correctly formating Data value
-                for (int j = 0; j < datalength; i++) {
-                    dataString = "0" + dataString;
-                }
-
-                outputString += dataString + "\n";
-            }
-        }
-
-        for (int i = hlt + 1; i < stringFile.length; i++) {
-
-            String[] lineArray = stringFile[i].split(" ");
-
-            String dataString = lineArray[2];
-
-            if (lineArray[1] != "HEX")
-                switch (lineArray[1]) {
-
-                    case "DEC":
-                        dataString = Integer.toBinaryString(Integer.parseInt(lineArray[2]));
-                        break;
-
-                    case "BIN":
-                        dataString = Integer.toBinaryString(Integer.parseInt(lineArray[2], 2));
-                        break;
-                    default:
-                        break;
-                }
-
-            int datalength = 16 - dataString.length();
-
-            // correctly formating Data value
-            for (int j = 0; j < datalength; i++) {
-                dataString = "0" + dataString;
-            }
-
-            outputString += dataString + "\n";
+    private static void writeFile(String destination, CharSequence content) throws IOException {
+        try (BufferedWriter buffer = new BufferedWriter(new FileWriter(destination))) {
+            buffer.append(content);
         }
+    }
 
-        FileWriter writer = new FileWriter(destination);
-        BufferedWriter buffer = new BufferedWriter(writer);
-
-        buffer.write(outputString);
-
-        buffer.close();
-
-        Logger.Declare("File Compile Complete");
-        return true;
+    // Upper case hex, zero padded to digits
+    private static String hex(int value, int digits) {
+        String s = Integer.toHexString(value).toUpperCase();
+        while (s.length() < digits)
+            s = "0" + s;
+        return s;
     }
 
     public static Object[] getOpCode(String op) {
 
         for (Object[] opCode : instructionSet) {
-            if (opCode[0] == op.toUpperCase())
+            if (((String) opCode[0]).equalsIgnoreCase(op))
                 return opCode;
         }
 
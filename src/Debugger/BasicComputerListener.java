@@ -11,4 +11,10 @@ public interface BasicComputerListener {
     boolean onFlagChange();
 
     boolean onEveryThingChanging();
+
+    boolean onRunProgress(long instructionsRetired, long cyclesElapsed);
+
+    // A run paused at a breakpoint (kind Breakpoints.EXECUTE, address of the instruction) or a watchpoint
+    // (READ / WRITE, address of the word)
+    boolean onBreakpoint(int kind, int address);
 }
@@ -5,6 +5,8 @@ public class Logger {
     private static String logString = "";
     public static boolean show = true;
     public static boolean isLogging = true;
+    // lets worker threads (like the farm's) run computers without touching System.out or the shared log
+    private static final ThreadLocal<Boolean> silenced = ThreadLocal.withInitial(() -> false);
     public static final String ANSI_RESET = "\u001B[0m";
     public static final String ANSI_BLACK = "\u001B[30m";
     public static final String ANSI_RED = "\u001B[31m";
@@ -16,7 +18,7 @@ public class Logger {
     public static final String ANSI_WHITE = "\u001B[37m";
 
     public static void Warn(String Message) {
-        if (isLogging) {
+        if (isLogging && !silenced.get()) {
             if (show)
                 System.out.println(ANSI_YELLOW + "[Warning]: " + Message + "." + ANSI_WHITE);
             logString += ANSI_YELLOW + "[Warning]: " + Message + "." + ANSI_WHITE + "\n";
@@ -24,7 +26,7 @@ public class Logger {
     }
 
     public static void Error(String Message) {
-        if (isLogging) {
+        if (isLogging && !silenced.get()) {
             if (show)
                 System.out.println(ANSI_RED + "[Error]: " + Message + "." + ANSI_WHITE);
             logString += ANSI_RED + "[Error]: " + Message + "." + ANSI_WHITE + "\n";
@@ -32,7 +34,7 @@ public class Logger {
     }
 
     public static void Log(String Message) {
-        if (isLogging) {
+        if (isLogging && !silenced.get()) {
             if (show)
                 System.out.println("[Log]: " + Message + ".");
             logString += "[Log]: " + Message + ".\n";
@@ -40,12 +42,20 @@ public class Logger {
     }
 
     public static void Declare(String Message) {
-        if (isLogging) {
+        if (isLogging && !silenced.get()) {
             System.out.println(ANSI_PURPLE + "[Declaration]: " + Message + "." + ANSI_WHITE);
             logString += ANSI_PURPLE + "[Declaration]: " + Message + "." + ANSI_WHITE + "\n";
         }
     }
 
+    public static void silenceThread(boolean silence) {
+        silenced.set(silence);
+    }
+
+    public static boolean isThreadSilenced() {
+        return silenced.get();
+    }
+
     public String getLogString() {
         return logString;
     }
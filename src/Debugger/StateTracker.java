@@ -1,37 +1,196 @@
 package Debugger;
 
+import java.util.Arrays;
+
 import Emulator.BasicComputer;
+import Emulator.Breakpoints;
+import Emulator.History;
 import Emulator.Register;
 
 // This class will track the state of the Computer's Registers and Ram
+// It is also the debugger's way of stopping it: breakpoints and watchpoints set through getBreakpoints() pause
+// resume() (and any other run of the computer) when they are hit.
+// Everything run through resume() and step() is recorded (see History), so the computer can be taken back
+// with stepBack(), reverseContinue() and seek(); resume() from the past replays the recorded instructions.
+// The computer is observed, so the tracker keeps its memory, registers and flags as last handed over (see
+// BasicComputer.setObserving) and what changed since clearChanges().
 public class StateTracker implements BasicComputerListener {
 
+    private final BasicComputer computer;
+    private final Breakpoints breakpoints = new Breakpoints();
+    private final History history;
+
+    // totals of the computer as last reported by a run
+    private long instructionsRetired = 0;
+    private long cyclesElapsed = 0;
+
+    // the computer as last handed over, and what changed since clearChanges()
+    private final short[] memory = new short[4096];
+    private final boolean[] written = new boolean[4096];
+    private final short[] registers = new short[Register.values().length];
+    private final boolean[] changedRegisters = new boolean[Register.values().length];
+    private byte flags;
+    private boolean flagsChanged = false;
+
     public StateTracker(BasicComputer computer) {
+        this.computer = computer;
         computer.setListener(this);
+        computer.setObserving(true);
+        computer.setBreakpoints(breakpoints);
+        load();
+
+        history = new History(computer);
+        computer.setHistory(history);
+    }
+
+    public Breakpoints getBreakpoints() {
+        return breakpoints;
+    }
+
+    public History getHistory() {
+        return history;
+    }
+
+    public long getInstructionsRetired() {
+        return instructionsRetired;
+    }
+
+    public long getCyclesElapsed() {
+        return cyclesElapsed;
+    }
+
+    public short getMemory(int address) {
+        return memory[address & 0x0FFF];
+    }
+
+    public short getRegister(Register register) {
+        return registers[register.ordinal()];
+    }
+
+    public byte getFlags() {
+        return flags;
+    }
+
+    // The word was written since clearChanges()
+    public boolean wasWritten(int address) {
+        return written[address & 0x0FFF];
+    }
+
+    // The register changed since clearChanges()
+    public boolean wasChanged(Register register) {
+        return changedRegisters[register.ordinal()];
+    }
+
+    // Any flag changed since clearChanges()
+    public boolean flagsChanged() {
+        return flagsChanged;
+    }
+
+    public boolean clearChanges() {
+        Arrays.fill(written, false);
+        Arrays.fill(changedRegisters, false);
+        flagsChanged = false;
+        return true;
+    }
+
+    // Runs until HLT or a breakpoint, true if a breakpoint paused it
+    public boolean resume() {
+        return resume(Long.MAX_VALUE);
+    }
+
+    // Runs at most maxInstructions instructions, true if a breakpoint paused it before that
+    public boolean resume(long maxInstructions) {
+        history.forward(maxInstructions);
+        return computer.isPaused();
+    }
+
+    public boolean step() {
+        return resume(1);
+    }
+
+    // Goes back one instruction, false at the oldest recorded one
+    public boolean stepBack() {
+        return history.stepBack();
+    }
+
+    // Goes back to the last breakpoint or watchpoint hit, or to the oldest recorded instruction if there is none
+    public boolean reverseContinue() {
+        return history.reverseContinue();
+    }
+
+    // Goes to the point where the computer had retired the given number of instructions
+    public boolean seek(long instructionsRetired) {
+        return history.seek(instructionsRetired);
+    }
+
+    // Instructions retired right after the word was last written, -1 if it was not in the recorded past.
+    // seek() to one less shows the instruction that wrote it
+    public long whoLastWrote(int address) {
+        return history.lastWrite(address);
     }
 
     @Override
     public boolean onMemoryChange(int address, short value) {
-        // TODO Auto-generated method stub
-        return false;
+        memory[address] = value;
+        written[address] = true;
+        return true;
     }
 
     @Override
     public boolean onRegisterChange(Register register, short value) {
-        // TODO Auto-generated method stub
-        return false;
+        registers[register.ordinal()] = value;
+        changedRegisters[register.ordinal()] = true;
+        return true;
     }
 
     @Override
     public boolean onFlagChange() {
-        // TODO Auto-generated method stub
-        return false;
+        flags = computer.getFlags();
+        flagsChanged = true;
+        return true;
     }
 
+    // Memory and registers were replaced as a whole (restore, a new program), so every word and register counts
+    // as changed
     @Override
     public boolean onEveryThingChanging() {
-        // TODO Auto-generated method stub
-        return false;
+        load();
+        Arrays.fill(written, true);
+        Arrays.fill(changedRegisters, true);
+        flagsChanged = true;
+        return true;
+    }
+
+    private void load() {
+        for (int address = 0; address < memory.length; address++)
+            memory[address] = computer.getMemory(address);
+        for (Register register : Register.values())
+            registers[register.ordinal()] = computer.getRegister(register);
+        flags = computer.getFlags();
+    }
+
+    @Override
+    public boolean onRunProgress(long instructionsRetired, long cyclesElapsed) {
+        this.instructionsRetired = instructionsRetired;
+        this.cyclesElapsed = cyclesElapsed;
+        Logger.Log(instructionsRetired + " Instructions Retired In " + cyclesElapsed + " Cycles");
+        return true;
+    }
+
+    @Override
+    public boolean onBreakpoint(int kind, int address) {
+        switch (kind) {
+            case Breakpoints.EXECUTE:
+                Logger.Log("Breakpoint hit at " + Integer.toHexString(address));
+                break;
+            case Breakpoints.READ:
+                Logger.Log("Watchpoint hit, " + Integer.toHexString(address) + " read");
+                break;
+            default:
+                Logger.Log("Watchpoint hit, " + Integer.toHexString(address) + " written");
+                break;
+        }
+        return true;
     }
 
 }
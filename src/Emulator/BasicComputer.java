@@ -6,7 +6,7 @@ import Debugger.Logger;
 // Where the computer will be implemented (Memory included)
 public class BasicComputer {
 
-    private short[] memory; // Computer Memory
+    private PagedMemory memory; // Computer Memory (copy on write pages)
 
     private byte SC = 0b00; // Sequence Counter
     private int AC = 0x00; // Accumulator (I have it set to int for simplicity but will only use 16 bits)
@@ -20,22 +20,67 @@ public class BasicComputer {
 
     private byte cycles = 0; // cycles taken (Refrenced as T in later comments)
 
-    private byte flags = 0b00; // byte containing all flages
-    // 0 -> Stop, 1 -> Interupt(IEN), 2 -> InputFlag (FGI), 3 -> OutputFlag (FGO),
-    // 4 -> E, 5 -> CarryBit, 6 -> IndirectMemoryAccess (I), 7 -> RedFlag (R)
+    private long instructionsRetired = 0; // instructions completed since the last reset
+    private long cyclesElapsed = 0; // cycles taken since the last reset
+    private long reportInterval = 0; // instructions between onRunProgress calls while running (0 = end only)
+    private long reportDue = Long.MAX_VALUE; // instructionsRetired at the next onRunProgress of this run
+    private long changeInterval = 4096; // instructions between change batches while observing
+
+    // Flags, each in its own field so the interpreter reads and writes them directly
+    private boolean S = false; // Stop
+    private boolean IEN = false; // Interupt Enable
+    private boolean FGI = false; // Input Flag
+    private boolean FGO = false; // Output Flag
+    private boolean E = false; // Extended AC bit
+    private boolean carryBit = false; // Carry out of the last ADD / INC
+    private boolean I = false; // Indirect Memory Access bit of the last instruction
+    private boolean R = false; // Interupt cycle flag (only set while the interupt cycle runs)
+
+    private ChangeLog changes; // changes not yet handed to the listener (null unless observing)
 
     private BasicComputerListener listener; // Listener for the StateTracker
 
-    public BasicComputer() {
-        memory = new short[4096];
+    private EventScheduler events; // device events, created on first use
+    private IODevice inputDevice; // feeds INPR / FGI (null if none)
+    private IODevice outputDevice; // takes OUTR / FGO (null if none)
+
+    private BlockTranslator translator; // hot block translation tier (null when disabled)
+    private byte[] fusion; // SuperInstructions of the loaded image, never written
+    private Profiler profiler; // flat counters (null if not profiling)
+    private CallProfiler callProfiler; // guest call stacks (null if not profiling)
+    private History history; // recorded past (null if not recording)
+    private ExecutionProbe probe; // whichever of the three are set, told about every instruction
+    private Breakpoints breakpoints; // stops the run loop at (null if none given)
+    private boolean paused = false; // the last run stopped at a breakpoint or watchpoint
+    private boolean breakAtStart = false; // the next execute() stops at a breakpoint on its first instruction too
+    private boolean inEvents = false; // device events are running inside execute(), the flags in its locals
+
+    // lifetime Metrics counters of this computer (restore() does not roll them back) and how much of them
+    // the process sums already have
+    private final long[] metrics = new long[Metrics.COUNTERS];
+    private final long[] publishedMetrics = new long[Metrics.COUNTERS];
+
+    // SKI / SKO followed by a direct BUN back to it is a polling loop
+    private static final int POLL_BRANCH = 0x4000;
+    private static final int POLL_BRANCH_CYCLES = InstructionTable.CYCLES[POLL_BRANCH];
+    private static final int POLL_CYCLES = POLL_BRANCH_CYCLES + InstructionTable.CYCLES[0xF200];
+
+    public static final int TRANSLATION_THRESHOLD = 1000; // block entries before a block gets translated
 
-        for (int i = 0; i < memory.length; i++) {
-            memory[i] = 0x00;
-        }
+    public BasicComputer() {
+        memory = new PagedMemory();
+        fusion = new byte[4096];
     }
 
+    // The words are copied, the computer never writes to the given array
     public BasicComputer(short[] memory) {
-        this.memory = memory;
+        this(ProgramImage.of(memory));
+    }
+
+    // Shares the pages of the image until the computer writes to them
+    public BasicComputer(ProgramImage image) {
+        this.memory = new PagedMemory(image);
+        this.fusion = image.superInstructions();
     }
 
     public int completeInstruction() {
@@ -45,376 +90,856 @@ public class BasicComputer {
             return 0;
         }
 
-        cycles = 0; // resetting cycles from previous instruction
-
         // Entering Interupt Service Routine
-        if (getIEN() && (getFGI() || getFGO())) {
+        if (getIEN() && (getFGI() || getFGO()))
             Logger.Declare("Entering Interupt Service Routine");
 
-            setR(1);
-            AR = 0;
-            TR = PC;
+        execute(1, true);
 
-            cycles++;
+        if (changes != null)
+            deliverChanges();
 
-            memory[AR] = TR;
-            PC = 0;
-
-            cycles++;
+        Logger.Declare("Computed Instruction In " + cycles + " Cycles");
+        return cycles;
+    }
 
-            PC++;
-            setIEN(0);
-            setR(0);
-            return cycles;
-        }
+    // Runs until HLT (or an invalid register instruction) stops the computer, or a breakpoint pauses it
+    public long runUntilHalt() {
+        return run(Long.MAX_VALUE);
+    }
 
-        // Load AR with PC at T0
-        SC = 0x01;
-        AR = PC;
+    // Runs at most maxInstructions instructions without logging, returns the number of instructions retired.
+    // Progress is only reported through the listener every reportInterval instructions (0 = only at the end).
+    // While observing the run goes in batches of changeInterval instructions, the changes handed over after each
+    public long run(long maxInstructions) {
+        return run(maxInstructions, false);
+    }
 
-        cycles++;
+    // With breakAtStart a breakpoint on the first instruction stops the run as well (see History)
+    long run(long maxInstructions, boolean breakAtStart) {
+        if (isStopped() || maxInstructions <= 0) {
+            return 0;
+        }
 
-        // Fetch AR from memory and load it into IR, while incrementing PC at T1
-        SC = 0x05;
-        IR = memory[AR];
+        this.breakAtStart = breakAtStart;
+        reportDue = reportInterval > 0 ? instructionsRetired + reportInterval : Long.MAX_VALUE;
 
-        PC++;
-        cycles++;
+        long retired = 0;
+        if (changes == null) {
+            retired = execute(maxInstructions, false);
+        } else {
+            long batch;
+            do {
+                batch = execute(Math.min(maxInstructions - retired, changeInterval), false);
+                retired += batch;
+                deliverChanges();
+                breakAtStart = true; // only the first batch goes past a breakpoint the run starts on
+            } while (batch > 0 && retired < maxInstructions && !S && !paused);
+            breakAtStart = false;
+        }
 
-        // Set AR with IR(0-11), Set I accordingly, extract oppcode at T2
-        SC = 0x01;
-        AR = (short) (IR & 0x0FFF);
-        setI(IR >> 15);
-        short oppcode = (short) ((IR & 0x7000) >> 12);
+        if (listener != null)
+            listener.onRunProgress(instructionsRetired, cyclesElapsed);
 
-        cycles++;
+        return retired;
+    }
 
-        // Check oppcode type at T3
-        if (oppcode <= 0x06 || (oppcode >= 0x08 && oppcode <= 0x0E)) { // If oppcode is a memory reference
+    // The interpreter core, every register lives in a local until the loop exits.
+    // With singleStep set the loop returns after the first instruction or interrupt cycle.
+    private long execute(long maxInstructions, boolean singleStep) {
+        final PagedMemory mem = memory;
+        final short[][] pages = memory.pages;
+
+        int ac = AC;
+        int pc = PC & 0x0FFF;
+        int dr = DR;
+        int ar = AR;
+        int ir = IR;
+        int tr = TR;
+        int outr = OUTR;
+        int inpr = INPR & 0xFF;
+
+        // a profiler or breakpoint sees every instruction, so the tiers that run many at once stay off while
+        // one is set
+        final ExecutionProbe profile = probe;
+        final Breakpoints stops = breakpoints != null && !breakpoints.isEmpty() ? breakpoints : null;
+        final boolean plain = singleStep || profile != null || stops != null;
+        boolean leave = singleStep; // return after this instruction
+        int resumeAt = breakAtStart ? -1 : pc; // the breakpoint the run starts on does not stop it
+        breakAtStart = false;
+        paused = false;
+
+        // translated blocks write to the pages directly, past the change log
+        final ChangeLog log = changes;
+        final BlockTranslator jit = plain || log != null ? null : translator;
+        final boolean[] code = translator != null ? translator.code : null;
+        boolean blockStart = true;
+
+        boolean stopped = S;
+        boolean ien = IEN;
+        boolean fgi = FGI;
+        boolean fgo = FGO;
+        boolean e = E;
+        boolean carry = carryBit;
+        boolean indirect = I;
+
+        final long interval = reportInterval;
+        long nextReport = singleStep || reportDue == Long.MAX_VALUE ? Long.MAX_VALUE : reportDue - instructionsRetired;
+
+        final EventScheduler scheduler = events;
+        final IODevice input = inputDevice;
+        final IODevice output = outputDevice;
+        final long startCycle = cyclesElapsed;
+
+        long retired = 0;
+        long cycleCount = 0;
+        int lastCycles = 0;
+        long interrupts = 0;
+        long halts = 0;
+        long invalid = 0;
+        long bytesIn = 0;
+        long bytesOut = 0;
+
+        // Interupts and events are only looked at once cycleCount reaches the checkpoint
+        long checkpoint = checkpoint(ien, fgi, fgo, 0, scheduler, startCycle);
+
+        while (!stopped && retired < maxInstructions) {
+
+            if (cycleCount >= checkpoint) {
+
+                // Device events due by now, they only see the I/O registers and flags
+                if (scheduler != null && scheduler.nextTime() <= startCycle + cycleCount) {
+                    OUTR = (byte) outr;
+                    INPR = (byte) inpr;
+                    S = stopped;
+                    IEN = ien;
+                    FGI = fgi;
+                    FGO = fgo;
+
+                    inEvents = true;
+                    scheduler.runDue(this, startCycle + cycleCount);
+                    inEvents = false;
+                    if (profile != null)
+                        profile.events(startCycle + cycleCount);
+
+                    inpr = INPR & 0xFF;
+                    stopped = S;
+                    ien = IEN;
+                    fgi = FGI;
+                    fgo = FGO;
+                }
 
-            if (getI()) {
-                SC = 0x05;
-                IR = memory[AR];
+                checkpoint = checkpoint(ien, fgi, fgo, cycleCount, scheduler, startCycle);
 
-                cycles++;
-            } else {
-                cycles++;
+                if (stopped)
+                    break;
             }
 
-            switch (oppcode) {
-                case 0: // AND
-                    SC = 0x03;
-                    DR = memory[AR];
-
-                    cycles++;
-
-                    AC &= DR;
-
-                    cycles++;
+            // Interupt cycle, only taken between instructions
+            if (ien && (fgi || fgo)) {
+                ar = 0;
+                tr = pc;
+                mem.write(0, (short) tr);
+                if (log != null)
+                    log.memory(0, (short) tr);
+                if (code != null && code[0])
+                    translator.invalidate(0);
+                pc = 1;
+                ien = false;
+                blockStart = true;
+                interrupts++;
+                if (profile != null)
+                    profile.interrupt();
+                if (stops != null && stops.writes(0))
+                    leave = paused = true;
+                resumeAt = -1;
+
+                lastCycles = InstructionTable.INTERRUPT_CYCLES;
+                cycleCount += lastCycles;
+                checkpoint = checkpoint(ien, fgi, fgo, cycleCount, scheduler, startCycle);
+
+                if (leave)
                     break;
+                continue;
+            }
 
-                case 1: // ADD
-                    SC = 0x03;
-                    DR = memory[AR];
+            // Hand hot blocks over to their translation
+            if (jit != null && blockStart) {
+                TranslatedBlock block = jit.blocks[pc];
+                long budget = Math.min(maxInstructions, nextReport) - retired;
+                if (checkpoint != Long.MAX_VALUE) // never run past the next event
+                    budget = Math.min(budget, (checkpoint - cycleCount) / InstructionTable.MAX_CYCLES);
+
+                if (block != null && budget >= jit.lengths[pc]) {
+                    final long[] state = jit.state;
+                    state[BlockTranslator.STATE_AC] = ac;
+                    state[BlockTranslator.STATE_PC] = pc;
+                    state[BlockTranslator.STATE_DR] = dr;
+                    state[BlockTranslator.STATE_AR] = ar;
+                    state[BlockTranslator.STATE_IR] = ir;
+                    state[BlockTranslator.STATE_E] = e ? 1 : 0;
+                    state[BlockTranslator.STATE_CARRY] = carry ? 1 : 0;
+
+                    retired += block.execute(state, mem, code, budget);
+
+                    ac = (int) state[BlockTranslator.STATE_AC];
+                    pc = (int) state[BlockTranslator.STATE_PC];
+                    dr = (int) state[BlockTranslator.STATE_DR];
+                    ar = (int) state[BlockTranslator.STATE_AR];
+                    ir = (int) state[BlockTranslator.STATE_IR];
+                    e = state[BlockTranslator.STATE_E] != 0;
+                    carry = state[BlockTranslator.STATE_CARRY] != 0;
+                    indirect = ir >= 0x8000;
+                    lastCycles = InstructionTable.CYCLES[ir];
+                    cycleCount += state[BlockTranslator.STATE_CYCLES];
+
+                    if (state[BlockTranslator.STATE_DIRTY] >= 0)
+                        jit.invalidate((int) state[BlockTranslator.STATE_DIRTY]);
+
+                    if (retired >= nextReport && listener != null) {
+                        nextReport += interval;
+                        listener.onRunProgress(instructionsRetired + retired, cyclesElapsed + cycleCount);
+                    }
+                    continue;
+                }
 
-                    cycles++;
+                if (block == null)
+                    jit.profile(pc, mem);
+            }
 
-                    AC += DR;
-                    setCarryBit((AC & ~0xFF) > 0 ? 1 : 0);
-                    setE(getCarryBit() ? 1 : 0);
+            // Fused sequences, only when all of it runs before the checkpoint and within the budget.
+            // The words are checked again first, code written since the image was loaded falls through
+            fused: if (fusion[pc] != SuperInstructions.NONE && !plain
+                    && checkpoint - cycleCount > SuperInstructions.SPAN[fusion[pc]]
+                    && Math.min(maxInstructions, nextReport) - retired >= SuperInstructions.LENGTH[fusion[pc]]) {
+                final int first = pages[pc >>> PagedMemory.PAGE_SHIFT][pc & PagedMemory.PAGE_MASK] & 0xFFFF;
+                int next = (pc + 1) & 0x0FFF;
+                int second = pages[next >>> PagedMemory.PAGE_SHIFT][next & PagedMemory.PAGE_MASK] & 0xFFFF;
+                int count;
+                int cost;
+
+                switch (fusion[pc]) {
+                    case SuperInstructions.LDA_ADD_STA: {
+                        final int last = (pc + 2) & 0x0FFF;
+                        final int third = pages[last >>> PagedMemory.PAGE_SHIFT][last & PagedMemory.PAGE_MASK]
+                                & 0xFFFF;
+                        if (SuperInstructions.kind(first, second, third) != SuperInstructions.LDA_ADD_STA)
+                            break fused;
+
+                        ar = first & 0x0FFF;
+                        if (first >= 0x8000)
+                            ar = pages[ar >>> PagedMemory.PAGE_SHIFT][ar & PagedMemory.PAGE_MASK] & 0x0FFF;
+                        ac = pages[ar >>> PagedMemory.PAGE_SHIFT][ar & PagedMemory.PAGE_MASK] & 0xFFFF;
+
+                        ar = second & 0x0FFF;
+                        if (second >= 0x8000)
+                            ar = pages[ar >>> PagedMemory.PAGE_SHIFT][ar & PagedMemory.PAGE_MASK] & 0x0FFF;
+                        dr = pages[ar >>> PagedMemory.PAGE_SHIFT][ar & PagedMemory.PAGE_MASK];
+                        ac += dr & 0xFFFF;
+                        carry = ac > 0xFFFF;
+                        e = carry;
+                        ac &= 0xFFFF;
+
+                        ar = third & 0x0FFF;
+                        if (third >= 0x8000)
+                            ar = pages[ar >>> PagedMemory.PAGE_SHIFT][ar & PagedMemory.PAGE_MASK] & 0x0FFF;
+                        mem.write(ar, (short) ac);
+                        if (code != null && code[ar])
+                            translator.invalidate(ar);
+                        if (log != null)
+                            log.memory(ar, (short) ac);
+
+                        ir = third;
+                        pc = (last + 1) & 0x0FFF;
+                        count = 3;
+                        cost = InstructionTable.CYCLES[first] + InstructionTable.CYCLES[second]
+                                + InstructionTable.CYCLES[third];
+                        break;
+                    }
+
+                    case SuperInstructions.ISZ_BUN:
+                        if (SuperInstructions.kind(first, second, 0) != SuperInstructions.ISZ_BUN)
+                            break fused;
+
+                        ar = first & 0x0FFF;
+                        if (first >= 0x8000)
+                            ar = pages[ar >>> PagedMemory.PAGE_SHIFT][ar & PagedMemory.PAGE_MASK] & 0x0FFF;
+                        dr = (short) (pages[ar >>> PagedMemory.PAGE_SHIFT][ar & PagedMemory.PAGE_MASK] + 1);
+                        mem.write(ar, (short) dr);
+                        if (code != null && code[ar])
+                            translator.invalidate(ar);
+                        if (log != null)
+                            log.memory(ar, (short) dr);
+
+                        // the ISZ may have skipped the BUN or written over it
+                        second = pages[next >>> PagedMemory.PAGE_SHIFT][next & PagedMemory.PAGE_MASK] & 0xFFFF;
+                        if (dr == 0 || InstructionTable.HANDLER[second] != InstructionTable.BUN) {
+                            ir = first;
+                            pc = dr == 0 ? (next + 1) & 0x0FFF : next;
+                            count = 1;
+                            cost = InstructionTable.CYCLES[first];
+                            break;
+                        }
+
+                        ar = second & 0x0FFF;
+                        if (second >= 0x8000)
+                            ar = pages[ar >>> PagedMemory.PAGE_SHIFT][ar & PagedMemory.PAGE_MASK] & 0x0FFF;
+
+                        ir = second;
+                        pc = ar;
+                        count = 2;
+                        cost = InstructionTable.CYCLES[first] + InstructionTable.CYCLES[second];
+                        break;
 
-                    cycles++;
-                    break;
+                    default: // SuperInstructions.CLA_CLE
+                        if (SuperInstructions.kind(first, second, 0) != SuperInstructions.CLA_CLE)
+                            break fused;
 
-                case 2: // LDA
-                    SC = 0x03;
-                    DR = memory[AR];
-                    cycles++;
+                        ac = 0x00;
+                        e = false;
 
-                    SC = 0x04;
-                    AC = DR;
+                        ar = second & 0x0FFF;
+                        ir = second;
+                        pc = (next + 1) & 0x0FFF;
+                        count = 2;
+                        cost = InstructionTable.CYCLES[first] + InstructionTable.CYCLES[second];
+                        break;
+                }
 
-                    cycles++;
-                    break;
+                indirect = ir >= 0x8000;
+                lastCycles = InstructionTable.CYCLES[ir];
+                cycleCount += cost;
+                retired += count;
+                blockStart = BlockTranslator.endsBlock(InstructionTable.HANDLER[ir]);
 
-                case 3: // STA
-                    SC = 0x07;
-                    memory[AR] = (short) AC;
+                if (retired >= nextReport && listener != null) {
+                    nextReport += interval;
+                    listener.onRunProgress(instructionsRetired + retired, cyclesElapsed + cycleCount);
+                }
+                continue;
+            }
 
-                    cycles++;
+            // Execution breakpoint on the next instruction, one bit test unless it is set
+            if (stops != null) {
+                if ((stops.execute[pc >>> 6] & 1L << pc) != 0 && pc != resumeAt
+                        && stops.stopsAt(pc, ac, dr, ar, ir, tr, outr, inpr)) {
+                    paused = true;
                     break;
+                }
+                resumeAt = -1;
+            }
 
-                case 4: // BUN
-                    SC = 0x04;
-                    PC = AR;
-
-                    cycles++;
-                    break;
+            // Fetch (T0, T1), the decode of T2 is done once for every word in InstructionTable
+            ar = pc;
+            ir = pages[ar >>> PagedMemory.PAGE_SHIFT][ar & PagedMemory.PAGE_MASK] & 0xFFFF;
+            pc = (pc + 1) & 0x0FFF;
 
-                case 5: // BSA
-                    SC = 0x07;
-                    memory[AR] = PC;
-                    AR++;
+            final int handler = InstructionTable.HANDLER[ir];
+            ar = ir & 0x0FFF;
+            indirect = ir >= 0x8000;
 
-                    cycles++;
+            // Indirect fetch at T3
+            if (indirect && handler <= InstructionTable.ISZ)
+                ar = pages[ar >>> PagedMemory.PAGE_SHIFT][ar & PagedMemory.PAGE_MASK] & 0x0FFF;
 
-                    SC = 0x04;
-                    PC = AR;
+            if (profile != null)
+                profile.count((pc - 1) & 0x0FFF, handler, ir, ar);
+            if (stops != null && handler <= InstructionTable.ISZ && stops.accesses(handler, ir, ar))
+                leave = paused = true; // watchpoints stop after the instruction
 
-                    cycles++;
+            switch (handler) {
+                case InstructionTable.AND:
+                    dr = pages[ar >>> PagedMemory.PAGE_SHIFT][ar & PagedMemory.PAGE_MASK];
+                    ac &= dr & 0xFFFF;
                     break;
 
-                case 6: // ISZ
-                    SC = 0x03;
-                    DR = memory[AR];
-
-                    cycles++;
-
-                    DR++;
-
-                    cycles++;
-
-                    SC = 0x07;
-                    memory[AR] = DR;
-                    if (DR == 0)
-                        PC++;
-
+                case InstructionTable.ADD:
+                    dr = pages[ar >>> PagedMemory.PAGE_SHIFT][ar & PagedMemory.PAGE_MASK];
+                    ac += dr & 0xFFFF;
+                    carry = ac > 0xFFFF;
+                    e = carry;
+                    ac &= 0xFFFF;
                     break;
 
-                // Second set of oppcodes for Memory opperations
-                case 0x08: // AND
-                    SC = 0x03;
-                    DR = memory[AR];
+                case InstructionTable.LDA:
+                    dr = pages[ar >>> PagedMemory.PAGE_SHIFT][ar & PagedMemory.PAGE_MASK];
+                    ac = dr & 0xFFFF;
+                    break;
 
-                    cycles++;
+                case InstructionTable.STA:
+                    mem.write(ar, (short) ac);
+                    if (code != null && code[ar])
+                        translator.invalidate(ar);
+                    if (log != null)
+                        log.memory(ar, (short) ac);
+                    break;
 
-                    AC &= DR;
+                case InstructionTable.BUN:
+                    pc = ar;
+                    break;
 
-                    cycles++;
+                case InstructionTable.BSA:
+                    mem.write(ar, (short) pc);
+                    if (code != null && code[ar])
+                        translator.invalidate(ar);
+                    if (log != null)
+                        log.memory(ar, (short) pc);
+                    ar = (ar + 1) & 0x0FFF;
+                    pc = ar;
                     break;
 
-                case 0x09: // ADD
-                    SC = 0x03;
-                    DR = memory[AR];
-                    cycles++;
+                case InstructionTable.ISZ:
+                    dr = (short) (pages[ar >>> PagedMemory.PAGE_SHIFT][ar & PagedMemory.PAGE_MASK] + 1);
+                    mem.write(ar, (short) dr);
+                    if (code != null && code[ar])
+                        translator.invalidate(ar);
+                    if (log != null)
+                        log.memory(ar, (short) dr);
+                    if (dr == 0)
+                        pc = (pc + 1) & 0x0FFF;
+                    break;
 
-                    AC += DR;
-                    setCarryBit((AC & ~0xFF) > 0 ? 1 : 0);
-                    setE(getCarryBit() ? 1 : 0);
-                    AC &= 0xFFFF;
+                case InstructionTable.CLA:
+                    ac = 0x00;
+                    break;
 
-                    cycles++;
+                case InstructionTable.CLE:
+                    e = false;
                     break;
 
-                case 0x10: // LDA
-                    SC = 0x03;
-                    DR = memory[AR];
-                    cycles++;
+                case InstructionTable.CMA:
+                    ac = ~ac & 0xFFFF;
+                    break;
 
-                    SC = 0x04;
-                    AC = DR;
+                case InstructionTable.CME:
+                    e = !e;
+                    break;
 
-                    cycles++;
+                case InstructionTable.CIR: {
+                    boolean lowBit = (ac & 0x01) != 0;
+                    ac = (ac >> 1) | (e ? 0x8000 : 0);
+                    e = lowBit;
                     break;
+                }
 
-                case 0x11: // STA
-                    SC = 0x07;
-                    memory[AR] = (short) AC;
+                case InstructionTable.CIL: {
+                    boolean highBit = (ac & 0x8000) != 0;
+                    ac = ((ac << 1) | (e ? 1 : 0)) & 0xFFFF;
+                    e = highBit;
+                    break;
+                }
 
-                    cycles++;
+                case InstructionTable.INC:
+                    ac++;
+                    carry = ac > 0xFFFF;
+                    e = carry;
+                    ac &= 0xFFFF; // making sure AC is 16 bits
                     break;
 
-                case 0x12: // BUN
-                    SC = 0x04;
-                    PC = AR;
+                case InstructionTable.SPA:
+                    if ((ac & 0x8000) == 0)
+                        pc = (pc + 1) & 0x0FFF;
+                    break;
 
-                    cycles++;
+                case InstructionTable.SNA:
+                    if ((ac & 0x8000) != 0)
+                        pc = (pc + 1) & 0x0FFF;
                     break;
 
-                case 0x13: // BSA
-                    SC = 0x07;
-                    memory[AR] = PC;
-                    AR++;
+                case InstructionTable.SZA:
+                    if (ac == 0)
+                        pc = (pc + 1) & 0x0FFF;
+                    break;
 
-                    cycles++;
+                case InstructionTable.SZE:
+                    if (!e)
+                        pc = (pc + 1) & 0x0FFF;
+                    break;
 
-                    SC = 0x04;
-                    PC = AR;
+                case InstructionTable.HLT:
+                    stopped = true;
+                    halts++;
+                    break;
 
-                    cycles++;
+                case InstructionTable.INP:
+                    ac = (ac & 0xFF00) | inpr;
+                    fgi = false;
+                    bytesIn++;
+                    if (input != null) {
+                        input.onInput(startCycle + cycleCount + InstructionTable.CYCLES[ir]);
+                        checkpoint = checkpoint(ien, fgi, fgo, cycleCount, scheduler, startCycle);
+                    }
                     break;
 
-                case 0x14: // ISZ
-                    SC = 0x03;
-                    DR = memory[AR];
+                case InstructionTable.OUT:
+                    outr = ac;
+                    fgo = false;
+                    bytesOut++;
+                    if (output != null) {
+                        output.onOutput((byte) ac, startCycle + cycleCount + InstructionTable.CYCLES[ir]);
+                        checkpoint = checkpoint(ien, fgi, fgo, cycleCount, scheduler, startCycle);
+                    }
+                    break;
 
-                    cycles++;
+                case InstructionTable.SKI:
+                    if (fgi) {
+                        pc = (pc + 1) & 0x0FFF;
+                    } else if (!plain && pages[pc >>> PagedMemory.PAGE_SHIFT][pc & PagedMemory.PAGE_MASK]
+                            == (short) (POLL_BRANCH | ((pc - 1) & 0x0FFF))) {
+                        // SKI / BUN back polling loop, only an event can end it so skip to just before that
+                        long spins = pollingSpins(checkpoint - cycleCount - InstructionTable.CYCLES[ir],
+                                Math.min(maxInstructions, nextReport) - retired - 1, startCycle + cycleCount);
+                        cycleCount += spins * POLL_CYCLES;
+                        retired += spins * 2;
+                    }
+                    break;
 
-                    DR++;
+                case InstructionTable.SKO:
+                    if (fgo) {
+                        pc = (pc + 1) & 0x0FFF;
+                    } else if (!plain && pages[pc >>> PagedMemory.PAGE_SHIFT][pc & PagedMemory.PAGE_MASK]
+                            == (short) (POLL_BRANCH | ((pc - 1) & 0x0FFF))) {
+                        // SKO / BUN back polling loop, only an event can end it so skip to just before that
+                        long spins = pollingSpins(checkpoint - cycleCount - InstructionTable.CYCLES[ir],
+                                Math.min(maxInstructions, nextReport) - retired - 1, startCycle + cycleCount);
+                        cycleCount += spins * POLL_CYCLES;
+                        retired += spins * 2;
+                    }
+                    break;
 
-                    cycles++;
+                case InstructionTable.ION:
+                    ien = true;
+                    checkpoint = checkpoint(ien, fgi, fgo, cycleCount, scheduler, startCycle);
+                    break;
 
-                    SC = 0x07;
-                    memory[AR] = DR;
-                    if (DR == 0)
-                        PC++;
+                case InstructionTable.IOF:
+                    ien = false;
+                    checkpoint = checkpoint(ien, fgi, fgo, cycleCount, scheduler, startCycle);
+                    break;
 
+                case InstructionTable.INVALID_IO:
+                    Logger.Error("invalid I/O oppcode : " + indirect + " " + 0x07 + " " + ar);
+                    invalid++;
                     break;
 
-                default:
-                    System.out.println("invalid memory oppcode : " + getI() + " " + oppcode + " " + AR);
+                default: // InstructionTable.INVALID_REGISTER
+                    Logger.Error("invalid Register oppcode : " + indirect + " " + 0x07 + " " + ar);
+                    stopped = true;
+                    invalid++;
                     break;
             }
 
-        } else { // If oppcode is a register or I/O opperation
-
-            if (getI()) { // If I/O opperation
-                switch (AR) {
-                    case 0x800: // INP
-                        SC = 0x04;
-                        AC = (AC & 0xFF00) | INPR;
-                        setFGI(0);
-
-                        cycles++;
-                        break;
+            lastCycles = InstructionTable.CYCLES[ir];
+            cycleCount += lastCycles;
+            retired++;
+            blockStart = !BlockTranslator.isTranslatable(handler) || BlockTranslator.endsBlock(handler);
 
-                    case 0x400: // OUT
-                        OUTR = (byte) AC;
-                        setFGO(0);
+            if (leave)
+                break;
 
-                        cycles++;
-                        break;
-
-                    case 0x200: // SKI
-                        if (getFGI())
-                            PC++;
+            if (retired >= nextReport && listener != null) {
+                nextReport += interval;
+                listener.onRunProgress(instructionsRetired + retired, cyclesElapsed + cycleCount);
+            }
+        }
 
-                        cycles++;
-                        break;
+        // Write the locals back
+        SC = 0x00; // every instruction ends by clearing SC
+        AC = ac;
+        PC = (short) pc;
+        DR = (short) dr;
+        AR = (short) ar;
+        IR = (short) ir;
+        TR = (short) tr;
+        OUTR = (byte) outr;
+        cycles = (byte) lastCycles;
+
+        S = stopped;
+        IEN = ien;
+        FGI = fgi;
+        FGO = fgo;
+        E = e;
+        carryBit = carry;
+        I = indirect;
+
+        if (paused && listener != null)
+            listener.onBreakpoint(stops.getHitKind(), stops.getHitAddress());
+
+        if (nextReport != Long.MAX_VALUE)
+            reportDue = instructionsRetired + nextReport;
+
+        instructionsRetired += retired;
+        cyclesElapsed += cycleCount;
+
+        final long[] counters = metrics;
+        counters[Metrics.INSTRUCTIONS] += retired;
+        counters[Metrics.CYCLES] += cycleCount;
+        counters[Metrics.INTERRUPTS] += interrupts;
+        counters[Metrics.HALTS] += halts;
+        counters[Metrics.INVALID] += invalid;
+        counters[Metrics.BYTES_IN] += bytesIn;
+        counters[Metrics.BYTES_OUT] += bytesOut;
+
+        if (!singleStep
+                || counters[Metrics.INSTRUCTIONS] - publishedMetrics[Metrics.INSTRUCTIONS] >= Metrics.PUBLISH_INTERVAL)
+            Metrics.publish(counters, publishedMetrics);
+
+        return retired;
+    }
 
-                    case 0x100: // SKO
-                        if (getFGO())
-                            PC++;
+    // Whole BUN + skip iterations of a polling loop that run before the checkpoint, after the first skip.
+    // Each one has to start before the checkpoint, so the loop sees the event at the same instruction
+    // (and cycle) as it would running every iteration
+    private static long pollingSpins(long cyclesLeft, long instructionsLeft, long cyclesSoFar) {
+        long spins = cyclesLeft > POLL_BRANCH_CYCLES ? (cyclesLeft - POLL_BRANCH_CYCLES - 1) / POLL_CYCLES + 1 : 0;
+        spins = Math.min(spins, instructionsLeft / 2);
+        return Math.min(spins, (Long.MAX_VALUE - cyclesSoFar) / POLL_CYCLES);
+    }
 
-                        cycles++;
-                        break;
+    // Cycle count (relative to the start of the run) at which the loop has to look at interupts and events again
+    private static long checkpoint(boolean ien, boolean fgi, boolean fgo, long cycleCount, EventScheduler scheduler,
+            long startCycle) {
+        if (ien && (fgi || fgo))
+            return cycleCount;
 
-                    case 0x080: // ION
-                        setIEN(1);
+        if (scheduler == null || scheduler.size() == 0)
+            return Long.MAX_VALUE;
 
-                        cycles++;
-                        break;
+        return scheduler.nextTime() - startCycle;
+    }
 
-                    case 0x040: // IOF
-                        setIEN(0);
+    public long getInstructionsRetired() {
+        return instructionsRetired;
+    }
 
-                        cycles++;
-                        break;
+    public long getCyclesElapsed() {
+        return cyclesElapsed;
+    }
 
-                    default:
-                        System.out.println("invalid I/O oppcode : " + getI() + " " + oppcode + " " + AR);
-                        break;
-                }
-            } else { // If register opperation
-                switch (AR) {
-                    case 0x800: // CLA
-                        AC = 0x00;
+    public boolean setReportInterval(long reportInterval) {
+        this.reportInterval = reportInterval;
+        return true;
+    }
 
-                        cycles++;
-                        break;
+    // Turns the block translation tier on or off (it needs a JDK, without one everything stays interpreted)
+    public boolean setTranslation(boolean enabled) {
+        if (enabled && !SourceCompiler.isAvailable()) {
+            Logger.Warn("Block Translation Needs A JDK, Staying Interpreted");
+            return false;
+        }
 
-                    case 0x400: // CLE
-                        setE(0);
+        if (translator == null) {
+            if (enabled)
+                translator = new BlockTranslator(TRANSLATION_THRESHOLD);
+        } else if (enabled) {
+            translator.setThreshold(TRANSLATION_THRESHOLD);
+        } else if (translator.getImage() != null) {
+            translator.setThreshold(0); // keep the attached image
+        } else {
+            translator = null;
+        }
+        return true;
+    }
 
-                        cycles++;
-                        break;
+    // Runs the current memory through an ahead of time translation (see ImageTranslator)
+    public boolean attachTranslation(TranslatedImage image) {
+        if (!image.matches(memory)) {
+            Logger.Warn("Translated Image Does Not Match The Loaded Memory");
+            return false;
+        }
 
-                    case 0x200: // CMA
-                        AC = ~AC;
+        if (translator == null)
+            translator = new BlockTranslator(0);
 
-                        cycles++;
-                        break;
+        translator.install(image);
 
-                    case 0x100: // CME
-                        setE(getE() ? 0 : 1);
+        Logger.Declare("Translated Image Attached");
+        return true;
+    }
 
-                        cycles++;
-                        break;
+    // Must be called after writing to the PagedMemory from outside while translation is on
+    public boolean invalidateTranslations() {
+        if (translator != null)
+            translator.clear();
+        return true;
+    }
 
-                    case 0x080: // CIR
-                        short temp = (short) AC;
-                        AC >>= 1;
-                        AC = (AC &= 0x7FFE) | ((getE() ? 1 : 0) << 15);
-                        setE(temp & ~0xFFFE);
+    // Counts every instruction from now on into the profiler, null stops profiling
+    public boolean setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+        probe = ExecutionProbe.of(ExecutionProbe.of(profiler, callProfiler), history);
+        return true;
+    }
 
-                        cycles++;
-                        break;
+    public Profiler getProfiler() {
+        return profiler;
+    }
 
-                    case 0x040: // CIL
-                        short temp2 = (short) AC;
-                        AC <<= 1;
-                        AC |= (getE() ? 1 : 0);
-                        setE(temp2 >> 15);
+    // Follows the guest call stack from now on into the profiler, null stops it
+    public boolean setCallProfiler(CallProfiler callProfiler) {
+        this.callProfiler = callProfiler;
+        probe = ExecutionProbe.of(ExecutionProbe.of(profiler, callProfiler), history);
+        return true;
+    }
 
-                        AC &= 0xFFFF;
+    public CallProfiler getCallProfiler() {
+        return callProfiler;
+    }
 
-                        cycles++;
-                        break;
+    // Records the past into history from now on (see History), null stops recording
+    public boolean setHistory(History history) {
+        this.history = history;
+        probe = ExecutionProbe.of(ExecutionProbe.of(profiler, callProfiler), history);
+        return true;
+    }
 
-                    case 0x020: // INC
-                        AC++;
-                        setCarryBit(AC >> 16);
-                        setE(getCarryBit() ? 1 : 0);
+    public History getHistory() {
+        return history;
+    }
 
-                        AC &= 0xFFFF; // making sure AC is 16 bits
+    // Runs again from a restored past state for History: the recorded events take the place of the devices and
+    // their events, there are no probes, change batches or listener calls, and only the given breakpoints (null
+    // for none) stop it. With breakAtStart a breakpoint on the first instruction stops it as well
+    long replay(long instructions, EventScheduler recorded, Breakpoints stops, boolean breakAtStart) {
+        final EventScheduler liveEvents = events;
+        final IODevice liveInput = inputDevice;
+        final IODevice liveOutput = outputDevice;
+        final ExecutionProbe liveProbe = probe;
+        final Breakpoints liveBreakpoints = breakpoints;
+        final ChangeLog liveChanges = changes;
+        final BasicComputerListener liveListener = listener;
+
+        events = recorded;
+        inputDevice = null;
+        outputDevice = null;
+        probe = null;
+        breakpoints = stops;
+        changes = null;
+        listener = null;
+        reportDue = Long.MAX_VALUE;
+        this.breakAtStart = breakAtStart;
+
+        try {
+            return execute(instructions, false);
+        } finally {
+            events = liveEvents;
+            inputDevice = liveInput;
+            outputDevice = liveOutput;
+            probe = liveProbe;
+            breakpoints = liveBreakpoints;
+            changes = liveChanges;
+            listener = liveListener;
+            this.breakAtStart = false;
+        }
+    }
 
-                        cycles++;
-                        break;
+    // What a recorded device event left behind (see History): INPR and the S, IEN, FGI and FGO flags
+    void setIO(byte inpr, int flags) {
+        INPR = inpr;
+        S = (flags & 0b1) != 0;
+        IEN = (flags & 0b10) != 0;
+        FGI = (flags & 0b100) != 0;
+        FGO = (flags & 0b1000) != 0;
+    }
 
-                    case 0x010: // SPA
-                        if (AC >> 15 == 0)
-                            PC++;
+    // Tells the listener about the breakpoint a replay paused at, as a run would have
+    void announceBreakpoint() {
+        if (paused && listener != null)
+            listener.onBreakpoint(breakpoints.getHitKind(), breakpoints.getHitAddress());
+    }
 
-                        cycles++;
-                        break;
+    // Stops run() at the breakpoints and watchpoints set in breakpoints from now on, null removes them.
+    // A stopped run returns early with isPaused() set and the listener told through onBreakpoint
+    public boolean setBreakpoints(Breakpoints breakpoints) {
+        this.breakpoints = breakpoints;
+        return true;
+    }
 
-                    case 0x08: // SNA
-                        if (AC >> 15 == 1)
-                            PC++;
+    public Breakpoints getBreakpoints() {
+        return breakpoints;
+    }
 
-                        cycles++;
-                        break;
+    // Whether the last run or step ended at a breakpoint or watchpoint (see Breakpoints.getHitKind)
+    public boolean isPaused() {
+        return paused;
+    }
 
-                    case 0x04: // SZA
-                        if (AC == 0)
-                            PC++;
+    // Counters of everything this computer ran so far (see Metrics), not rolled back by restore()
+    public MetricsSnapshot getMetrics() {
+        return Metrics.snapshot(metrics);
+    }
 
-                        cycles++;
-                        break;
+    // Adds the steps of completeInstruction() not yet in the process sums to them
+    public boolean publishMetrics() {
+        Metrics.publish(metrics, publishedMetrics);
+        return true;
+    }
 
-                    case 0x02: // SZE
-                        if (!getE())
-                            PC++;
+    public Snapshot snapshot() {
+        return snapshot(new Snapshot());
+    }
 
-                        cycles++;
-                        break;
+    // Fills the given snapshot (overwriting whatever it held) and returns it
+    public Snapshot snapshot(Snapshot snapshot) {
+        snapshot.AC = AC;
+        snapshot.PC = PC;
+        snapshot.DR = DR;
+        snapshot.AR = AR;
+        snapshot.IR = IR;
+        snapshot.TR = TR;
+        snapshot.SC = SC;
+        snapshot.INPR = INPR;
+        snapshot.OUTR = OUTR;
+        snapshot.flags = getFlags();
+        snapshot.cycles = cycles;
+        snapshot.instructionsRetired = instructionsRetired;
+        snapshot.cyclesElapsed = cyclesElapsed;
+
+        memory.capture(snapshot.pages);
+        return snapshot;
+    }
 
-                    case 0x01: // HLT
-                        stop();
-                        break;
+    // Puts the computer back to the snapshot, which stays usable for more restores
+    public boolean restore(Snapshot snapshot) {
+        restoreState(snapshot);
+        everythingChanged();
+        return true;
+    }
 
-                    default:
-                        Logger.Error("invalid Register oppcode : " + getI() + " " + oppcode + " " + AR);
-                        stop();
-                        break;
+    // restore() without telling the listener, for History which moves through many states to reach one
+    void restoreState(Snapshot snapshot) {
+        if (translator != null) {
+            // only translated words that really differ need their blocks dropped
+            for (int page = 0; page < PagedMemory.PAGE_COUNT; page++) {
+                short[] current = memory.pages[page];
+                short[] restored = snapshot.pages[page];
+
+                if (current == restored)
+                    continue;
+
+                for (int i = 0; i < PagedMemory.PAGE_SIZE; i++) {
+                    int address = (page << PagedMemory.PAGE_SHIFT) | i;
+                    if (translator.code[address] && current[i] != restored[i])
+                        translator.invalidate(address);
                 }
             }
         }
 
-        listener.onEveryThingChanging();
-
-        Logger.Declare("Computed Instruction In " + cycles + " Cycles");
-        return cycles;
+        memory.restore(snapshot.pages);
+
+        AC = snapshot.AC;
+        PC = snapshot.PC;
+        DR = snapshot.DR;
+        AR = snapshot.AR;
+        IR = snapshot.IR;
+        TR = snapshot.TR;
+        SC = snapshot.SC;
+        INPR = snapshot.INPR;
+        OUTR = snapshot.OUTR;
+        setFlags(snapshot.flags);
+        cycles = snapshot.cycles;
+        instructionsRetired = snapshot.instructionsRetired;
+        cyclesElapsed = snapshot.cyclesElapsed;
     }
 
     private boolean reset() {
@@ -427,147 +952,185 @@ public class BasicComputer {
         TR = 0x00;
         OUTR = 0x00;
         INPR = 0x00;
-        flags = 0b00;
+        S = false;
+        IEN = false;
+        FGI = false;
+        FGO = false;
+        E = false;
+        carryBit = false;
+        I = false;
+        R = false;
+        cycles = 0;
+        instructionsRetired = 0;
+        cyclesElapsed = 0;
 
         Logger.Declare("Computer Reset");
         return true;
     }
 
-    private boolean setR(int value) {
-        int R = flags & 0b10000000;
-        if (R == value << 7) {
-            return true;
-        } else {
-            flags ^= R;
-        }
+    public boolean getR() {
+        return R;
+    }
 
-        Logger.Declare("R Bit Set");
-        return true;
+    public boolean getI() {
+        return I;
     }
 
-    public boolean getR() {
-        int value = flags & 0b10000000;
-        return value > 0 ? true : false;
+    public boolean getCarryBit() {
+        return carryBit;
     }
 
-    private boolean setI(int value) {
-        int I = flags & 0b1000000;
-        if (I == value << 7) {
-            return true;
-        } else {
-            flags ^= I;
-        }
+    public boolean getE() {
+        return E;
+    }
 
-        Logger.Declare("I Bit Set");
+    public boolean setFGO(int value) {
+        boolean flag = value != 0;
+        if (FGO != flag) {
+            FGO = flag;
+            flagChanged();
+        }
         return true;
     }
 
-    public boolean getI() {
-        int value = flags & 0b1000000;
-        return value > 0 ? true : false;
+    public boolean getFGO() {
+        return FGO;
     }
 
-    private boolean setCarryBit(int value) {
-        int CarryBit = flags & 0b100000;
-        if (CarryBit == value << 5) {
-            return true;
-        } else {
-            flags ^= CarryBit;
+    public boolean setFGI(int value) {
+        boolean flag = value != 0;
+        if (FGI != flag) {
+            FGI = flag;
+            flagChanged();
         }
-
-        Logger.Declare("Carry Bit Set");
         return true;
     }
 
-    public boolean getCarryBit() {
-        int value = flags & 0b100000;
-        return value > 0 ? true : false;
+    public boolean getFGI() {
+        return FGI;
     }
 
-    private boolean setE(int value) {
-        int E = flags & 0b10000;
-        if (E == value << 4) {
-            return true;
-        } else {
-            flags ^= E;
+    public boolean setIEN(int value) {
+        boolean flag = value != 0;
+        if (IEN != flag) {
+            IEN = flag;
+            flagChanged();
         }
-
-        Logger.Declare("E Bit Set");
         return true;
     }
 
-    public boolean getE() {
-        int value = flags & 0b10000;
-        return value > 0 ? true : false;
+    public boolean getIEN() {
+        return IEN;
     }
 
-    public boolean setFGO(int value) {
-        int FGO = flags & 0b1000;
-        if (FGO == value << 3) {
-            return true;
-        } else {
-            flags ^= FGO;
-        }
+    public boolean isStopped() {
+        return S;
+    }
 
-        Logger.Declare("FGO Bit Set");
-        return true;
+    // All flags packed in one byte:
+    // 0 -> Stop, 1 -> Interupt(IEN), 2 -> InputFlag (FGI), 3 -> OutputFlag (FGO),
+    // 4 -> E, 5 -> CarryBit, 6 -> IndirectMemoryAccess (I), 7 -> RedFlag (R)
+    public byte getFlags() {
+        return (byte) ((S ? 0b1 : 0) | (IEN ? 0b10 : 0) | (FGI ? 0b100 : 0) | (FGO ? 0b1000 : 0)
+                | (E ? 0b10000 : 0) | (carryBit ? 0b100000 : 0) | (I ? 0b1000000 : 0) | (R ? 0b10000000 : 0));
     }
 
-    public boolean getFGO() {
-        int value = flags & 0b1000;
-        return value > 0 ? true : false;
+    private void setFlags(byte flags) {
+        int before = getFlags();
+
+        S = (flags & 0b1) != 0;
+        IEN = (flags & 0b10) != 0;
+        FGI = (flags & 0b100) != 0;
+        FGO = (flags & 0b1000) != 0;
+        E = (flags & 0b10000) != 0;
+        carryBit = (flags & 0b100000) != 0;
+        I = (flags & 0b1000000) != 0;
+        R = (flags & 0b10000000) != 0;
+
+        if (before != flags)
+            flagChanged();
     }
 
-    public boolean setFGI(int value) {
-        int FGI = flags & 0b100;
-        if (FGI == value << 2) {
-            return true;
-        } else {
-            flags ^= FGI;
-        }
+    // Changes only reach the listener while observing, so unobserved computers pay nothing for them.
+    // Memory, register and flag changes are handed over in batches (see ChangeLog): after every
+    // completeInstruction(), every changeInterval instructions of a run and when a run ends or pauses.
+    // Block translation stays off while observing
+    public boolean setObserving(boolean observing) {
+        if (!observing)
+            changes = null;
+        else if (changes == null)
+            changes = new ChangeLog(this);
+        return true;
+    }
 
-        Logger.Declare("FGI Bit Set");
+    // Instructions of a run between two change batches while observing
+    public boolean setChangeInterval(long changeInterval) {
+        if (changeInterval <= 0) {
+            Logger.Warn("Change Interval Must Be Positive, Not " + changeInterval);
+            return false;
+        }
+        this.changeInterval = changeInterval;
         return true;
     }
 
-    public boolean getFGI() {
-        int value = flags & 0b100;
-        return value > 0 ? true : false;
+    private void deliverChanges() {
+        changes.collect(this);
+        if (listener != null)
+            changes.deliver(listener);
+        else
+            changes.rebase(this);
     }
 
-    public boolean setIEN(int value) {
-        int IEN = flags & 0b10;
-        if (IEN == value << 1) {
-            return true;
-        } else {
-            flags ^= IEN;
+    // Memory and registers were replaced as a whole, the listener starts over from the current state
+    void everythingChanged() {
+        if (changes != null) {
+            changes.rebase(this);
+            if (listener != null)
+                listener.onEveryThingChanging();
         }
+    }
 
-        Logger.Declare("IEN Bit Set");
-        return true;
+    // Flags set by device events during a run are left to the run's next batch, which compares them with the
+    // interpreter's values once they are written back
+    private void flagChanged() {
+        if (changes != null && listener != null && !inEvents) {
+            changes.setFlags(getFlags());
+            listener.onFlagChange();
+        }
     }
 
-    public boolean getIEN() {
-        int value = flags & 0b10;
-        return value > 0 ? true : false;
+    public boolean setINPR(byte INPR) {
+        this.INPR = INPR;
+        return true;
     }
 
-    private boolean stop() {
-        flags ^= 0b1;
+    public EventScheduler getEventScheduler() {
+        if (events == null)
+            events = new EventScheduler();
+        return events;
+    }
 
-        Logger.Declare("Computer Stopped");
+    // Devices are attached at the current cycle, null takes the device off
+    public boolean setInputDevice(IODevice device) {
+        inputDevice = device;
+        if (device != null)
+            device.attach(this, getEventScheduler(), cyclesElapsed);
         return true;
     }
 
-    public boolean isStopped() {
-        int stopFlag = flags & 0b1;
-        return stopFlag == 1 ? true : false;
+    public boolean setOutputDevice(IODevice device) {
+        outputDevice = device;
+        if (device != null)
+            device.attach(this, getEventScheduler(), cyclesElapsed);
+        return true;
     }
 
-    public boolean setINPR(byte INPR) {
-        this.INPR = INPR;
-
-        Logger.Declare("INP Register Set");
+    // Takes both devices off and drops every scheduled event
+    public boolean detachDevices() {
+        inputDevice = null;
+        outputDevice = null;
+        if (events != null)
+            events.clear();
         return true;
     }
 
@@ -575,14 +1138,58 @@ public class BasicComputer {
         return OUTR;
     }
 
+    public short getRegister(Register register) {
+        switch (register) {
+            case AR:
+                return AR;
+            case PC:
+                return PC;
+            case DR:
+                return DR;
+            case AC:
+                return (short) AC;
+            case IR:
+                return IR;
+            case TR:
+                return TR;
+            case OUTR:
+                return (short) (OUTR & 0xFF);
+            case INPR:
+                return (short) (INPR & 0xFF);
+            default: // SC
+                return SC;
+        }
+    }
+
+    public short getMemory(int address) {
+        return memory.read(address & 0x0FFF);
+    }
+
+    // Copy of all 4096 words
+    public short[] dumpMemory() {
+        return memory.toArray();
+    }
+
+    public PagedMemory getPagedMemory() {
+        return memory;
+    }
+
     public Boolean setListener(BasicComputerListener listener) {
         this.listener = listener;
         return true;
     }
 
+    // The words are copied, later changes to the array do not reach the computer
     public Boolean setMemory(short[] newMemory) {
-        memory = newMemory;
+        return setMemory(ProgramImage.of(newMemory));
+    }
+
+    public Boolean setMemory(ProgramImage image) {
+        memory.load(image);
+        fusion = image.superInstructions();
+        invalidateTranslations();
         reset();
+        everythingChanged();
         return true;
     }
 
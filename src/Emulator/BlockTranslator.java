@@ -0,0 +1,493 @@
+package Emulator;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import Debugger.Logger;
+
+// Translation tier of the interpreter.
+// Counts how often every block start is reached, and once an address gets hot the block starting there
+// (up to and including the first BUN, BSA, ISZ or skip) is turned into Java source, compiled and loaded
+// as a hidden class. Writes into translated code drop the affected blocks, and I/O instructions and HLT
+// are never translated so the interpreter keeps handling interrupts and devices.
+final class BlockTranslator {
+
+    // Layout of the state array shared with the translated blocks
+    static final int STATE_AC = 0;
+    static final int STATE_PC = 1;
+    static final int STATE_DR = 2;
+    static final int STATE_AR = 3;
+    static final int STATE_IR = 4;
+    static final int STATE_E = 5;
+    static final int STATE_CARRY = 6;
+    static final int STATE_DIRTY = 7; // code address written by the block (-1 if none)
+    static final int STATE_CYCLES = 8; // cycles taken by the block
+    static final int STATE_SIZE = 9;
+
+    static final int MAX_BLOCK_LENGTH = 64;
+
+    private static final AtomicInteger classCount = new AtomicInteger(); // keeps the generated class names unique
+
+    final TranslatedBlock[] blocks = new TranslatedBlock[4096]; // block starting at each address
+    final int[] lengths = new int[4096]; // instructions in the block starting at each address
+    final boolean[] code = new boolean[4096]; // addresses covered by a translated block
+    final long[] state = new long[STATE_SIZE];
+
+    private final int[] heat = new int[4096]; // times each block start was reached
+    private final boolean[] failed = new boolean[4096]; // starts that can not be translated
+    private int threshold; // 0 when only an ahead of time translation is used
+    private TranslatedImage image; // attached ahead of time translation (null if none)
+
+    BlockTranslator(int threshold) {
+        this.threshold = threshold;
+    }
+
+    void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    TranslatedImage getImage() {
+        return image;
+    }
+
+    // Called by the interpreter when it reaches a block start that has no translation
+    void profile(int pc, PagedMemory memory) {
+        if (threshold <= 0 || failed[pc] || ++heat[pc] < threshold)
+            return;
+
+        translate(pc, memory);
+    }
+
+    // Routes every entry point of the image to its translation, which is preferred over single hot blocks
+    void install(TranslatedImage newImage) {
+        if (image != null)
+            dropImage();
+
+        image = newImage;
+
+        for (int i = 0; i < newImage.leaders.length; i++) {
+            blocks[newImage.leaders[i]] = newImage.program;
+            lengths[newImage.leaders[i]] = newImage.lengths[i];
+        }
+
+        rebuildCodeMap();
+    }
+
+    private void dropImage() {
+        for (int start = 0; start < 4096; start++) {
+            if (blocks[start] == image.program) {
+                blocks[start] = null;
+                lengths[start] = 0;
+                heat[start] = 0;
+            }
+        }
+
+        image = null;
+    }
+
+    // Drops every block covering the given address (the word there has been written)
+    void invalidate(int address) {
+        if (image != null && image.covered[address]) {
+            Logger.Warn("Translated Image Code Written At $" + address + ", Falling Back To The Interpreter");
+            dropImage();
+        }
+
+        for (int start = 0; start < 4096; start++) {
+            if (blocks[start] != null && ((address - start) & 0x0FFF) < lengths[start]) {
+                blocks[start] = null;
+                lengths[start] = 0;
+                heat[start] = 0;
+                failed[start] = false;
+            }
+        }
+
+        rebuildCodeMap();
+    }
+
+    // Drops every translation (the memory has been replaced)
+    void clear() {
+        for (int i = 0; i < 4096; i++) {
+            blocks[i] = null;
+            lengths[i] = 0;
+            heat[i] = 0;
+            failed[i] = false;
+            code[i] = false;
+        }
+
+        image = null;
+    }
+
+    private void rebuildCodeMap() {
+        for (int i = 0; i < 4096; i++)
+            code[i] = false;
+
+        for (int start = 0; start < 4096; start++)
+            if (image == null || blocks[start] != image.program)
+                for (int i = 0; i < lengths[start]; i++)
+                    code[(start + i) & 0x0FFF] = true;
+
+        if (image != null)
+            for (int i = 0; i < 4096; i++)
+                code[i] |= image.covered[i];
+    }
+
+    private void translate(int start, PagedMemory pagedMemory) {
+        short[] memory = pagedMemory.toArray();
+
+        int length = blockLength(start, memory);
+
+        if (length == 0) {
+            failed[start] = true;
+            return;
+        }
+
+        String className = "TranslatedBlock_" + Integer.toHexString(start) + "_" + classCount.getAndIncrement();
+        String source = generateSource(className, start, length, memory);
+
+        byte[] classFile = SourceCompiler.compile("Emulator." + className, source);
+
+        if (classFile == null) {
+            failed[start] = true;
+            return;
+        }
+
+        try {
+            blocks[start] = (TranslatedBlock) MethodHandles.lookup().defineHiddenClass(classFile, true)
+                    .lookupClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            Logger.Error("Translated block at $" + start + " could not be loaded: " + e);
+            failed[start] = true;
+            return;
+        }
+
+        lengths[start] = length;
+        for (int i = 0; i < length; i++)
+            code[(start + i) & 0x0FFF] = true;
+
+        Logger.Log("Translated " + length + " Instructions At $" + start);
+    }
+
+    // Number of instructions in the block starting at the given address (0 if it starts with I/O or HLT)
+    static int blockLength(int start, short[] memory) {
+        int length = 0;
+
+        while (length < MAX_BLOCK_LENGTH) {
+            int handler = InstructionTable.HANDLER[memory[(start + length) & 0x0FFF] & 0xFFFF];
+
+            if (!isTranslatable(handler))
+                break;
+
+            length++;
+
+            if (endsBlock(handler)) {
+                // a skip followed by BUN is kept together, so ISZ / BUN style loops become one block
+                if (isSkip(handler) && length < MAX_BLOCK_LENGTH
+                        && InstructionTable.HANDLER[memory[(start + length) & 0x0FFF] & 0xFFFF] == InstructionTable.BUN)
+                    length++;
+                break;
+            }
+        }
+
+        return length;
+    }
+
+    static boolean isSkip(int handler) {
+        return handler == InstructionTable.ISZ || (handler >= InstructionTable.SPA && handler <= InstructionTable.SZE);
+    }
+
+    static boolean isTranslatable(int handler) {
+        return handler <= InstructionTable.SZE;
+    }
+
+    static boolean endsBlock(int handler) {
+        switch (handler) {
+            case InstructionTable.BUN:
+            case InstructionTable.BSA:
+            case InstructionTable.ISZ:
+            case InstructionTable.SPA:
+            case InstructionTable.SNA:
+            case InstructionTable.SZA:
+            case InstructionTable.SZE:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    private static String generateSource(String className, int start, int length, short[] memory) {
+        StringBuilder source = new StringBuilder();
+
+        source.append("package Emulator;\n\n");
+        source.append("final class ").append(className).append(" implements TranslatedBlock {\n");
+        source.append("    public long execute(long[] s, PagedMemory m, boolean[] code, long budget) {\n");
+        appendStateLoad(source, "        ");
+        appendPageLoad(source, "        ", start, length, memory);
+        source.append("        long retired = 0;\n");
+        source.append("        long cycles = 0;\n");
+        source.append("        loop: while (true) {\n");
+        appendBlock(source, "            ", start, length, memory, "break loop;");
+        source.append("            if (pc != ").append(hex(start)).append(" || retired + ").append(length)
+                .append(" > budget)\n");
+        source.append("                break;\n");
+        source.append("        }\n");
+        appendStateStore(source, "        ");
+        source.append("        return retired;\n");
+        source.append("    }\n");
+        source.append("}\n");
+
+        return source.toString();
+    }
+
+    // Java statements running one block once and adding its instructions and cycles to retired and cycles.
+    // The exit statement leaves the surrounding loop or block early after a write into translated code.
+    static void appendBlock(StringBuilder source, String indent, int start, int length, short[] memory,
+            String exit) {
+        // a block ending with skip / BUN only runs the BUN when the skip was not taken
+        int bunWord = memory[(start + length - 1) & 0x0FFF] & 0xFFFF;
+        boolean branchTail = length >= 2 && InstructionTable.HANDLER[bunWord] == InstructionTable.BUN
+                && isSkip(InstructionTable.HANDLER[memory[(start + length - 2) & 0x0FFF] & 0xFFFF]);
+        int straight = branchTail ? length - 1 : length;
+
+        int blockCycles = 0;
+
+        for (int i = 0; i < straight; i++) {
+            int address = (start + i) & 0x0FFF;
+            int word = memory[address] & 0xFFFF;
+            boolean last = i == straight - 1;
+
+            blockCycles += InstructionTable.CYCLES[word];
+
+            appendInstruction(source, indent, address, word, last,
+                    "retired += " + (i + 1) + "; cycles += " + blockCycles + "; " + exit);
+        }
+
+        if (branchTail) {
+            int bunAddress = (start + straight) & 0x0FFF;
+
+            source.append(indent).append("if (pc == ").append(hex(bunAddress)).append(") {\n");
+            appendInstruction(source, indent + "    ", bunAddress, bunWord, true, null);
+            source.append(indent).append("    retired += ").append(length).append(";\n");
+            source.append(indent).append("    cycles += ").append(blockCycles + InstructionTable.CYCLES[bunWord])
+                    .append(";\n");
+            source.append(indent).append("} else {\n");
+            source.append(indent).append("    retired += ").append(straight).append(";\n");
+            source.append(indent).append("    cycles += ").append(blockCycles).append(";\n");
+            source.append(indent).append("}\n");
+        } else {
+            source.append(indent).append("retired += ").append(length).append(";\n");
+            source.append(indent).append("cycles += ").append(blockCycles).append(";\n");
+        }
+    }
+
+    static void appendStateLoad(StringBuilder source, String indent) {
+        source.append(indent).append("int ac = (int) s[").append(STATE_AC).append("];\n");
+        source.append(indent).append("int pc = (int) s[").append(STATE_PC).append("];\n");
+        source.append(indent).append("int dr = (int) s[").append(STATE_DR).append("];\n");
+        source.append(indent).append("int ar = (int) s[").append(STATE_AR).append("];\n");
+        source.append(indent).append("int ir = (int) s[").append(STATE_IR).append("];\n");
+        source.append(indent).append("boolean e = s[").append(STATE_E).append("] != 0;\n");
+        source.append(indent).append("boolean carry = s[").append(STATE_CARRY).append("] != 0;\n");
+        source.append(indent).append("s[").append(STATE_DIRTY).append("] = -1;\n");
+    }
+
+    // Declares a local for every page the block addresses directly. Pages the block writes to (all of them if
+    // it also writes through a pointer) are made private here, on block entry instead of on the first write,
+    // so the locals can never go stale.
+    static void appendPageLoad(StringBuilder source, String indent, int start, int length, short[] memory) {
+        boolean[] used = new boolean[PagedMemory.PAGE_COUNT];
+        boolean[] written = new boolean[PagedMemory.PAGE_COUNT];
+        boolean pointerWrite = false;
+
+        for (int i = 0; i < length; i++) {
+            int word = memory[(start + i) & 0x0FFF] & 0xFFFF;
+            int handler = InstructionTable.HANDLER[word];
+
+            if (!InstructionTable.isMemoryReference(handler) || handler == InstructionTable.BUN && word < 0x8000)
+                continue;
+
+            int page = (word & 0x0FFF) >>> PagedMemory.PAGE_SHIFT;
+            boolean writes = handler == InstructionTable.STA || handler == InstructionTable.BSA
+                    || handler == InstructionTable.ISZ;
+
+            used[page] = true;
+            if (writes && word < 0x8000)
+                written[page] = true;
+            if (writes && word >= 0x8000)
+                pointerWrite = true;
+        }
+
+        for (int page = 0; page < PagedMemory.PAGE_COUNT; page++) {
+            if (!used[page])
+                continue;
+
+            source.append(indent).append("short[] p").append(page).append(" = m.");
+            source.append(written[page] || pointerWrite ? "writablePage(" : "readablePage(");
+            source.append(page).append(");\n");
+        }
+    }
+
+    private static void appendWrite(StringBuilder source, String indent, boolean direct, String page,
+            String value) {
+        if (direct)
+            source.append(indent).append(page).append(" = ").append(value).append(";\n");
+        else
+            source.append(indent).append("m.write(ar, ").append(value).append(");\n");
+    }
+
+    static void appendStateStore(StringBuilder source, String indent) {
+        source.append(indent).append("s[").append(STATE_AC).append("] = ac;\n");
+        source.append(indent).append("s[").append(STATE_PC).append("] = pc;\n");
+        source.append(indent).append("s[").append(STATE_DR).append("] = dr;\n");
+        source.append(indent).append("s[").append(STATE_AR).append("] = ar;\n");
+        source.append(indent).append("s[").append(STATE_IR).append("] = ir;\n");
+        source.append(indent).append("s[").append(STATE_E).append("] = e ? 1 : 0;\n");
+        source.append(indent).append("s[").append(STATE_CARRY).append("] = carry ? 1 : 0;\n");
+        source.append(indent).append("s[").append(STATE_CYCLES).append("] = cycles;\n");
+    }
+
+    // Java statements for one translated instruction, with the same semantics as BasicComputer.execute.
+    // The last instruction of a block always sets pc, the exit statement leaves the block when code was written.
+    static void appendInstruction(StringBuilder source, String indent, int address, int word, boolean last,
+            String exit) {
+        int handler = InstructionTable.HANDLER[word];
+        String next = hex((address + 1) & 0x0FFF);
+        String skip = hex((address + 2) & 0x0FFF);
+        boolean writes = false;
+
+        // direct operands go straight to the page locals of appendPageLoad, indirect ones through m
+        String page = "p" + ((word & 0x0FFF) >>> PagedMemory.PAGE_SHIFT) + "[" + (word & PagedMemory.PAGE_MASK) + "]";
+        boolean direct = word < 0x8000;
+        String read = direct ? page : "m.read(ar)";
+
+        source.append(indent).append("// $").append(hex(address)).append(": ").append(InstructionTable.NAMES[handler]);
+        if (InstructionTable.isMemoryReference(handler))
+            source.append(" ").append(hex(word & 0x0FFF)).append(word >= 0x8000 ? " I" : "");
+        source.append("\n");
+
+        source.append(indent).append("ir = ").append(hex(word)).append(";\n");
+
+        if (InstructionTable.isMemoryReference(handler)) {
+            if (!direct)
+                source.append(indent).append("ar = ").append(page).append(" & 0x0FFF;\n");
+            else
+                source.append(indent).append("ar = ").append(hex(word & 0x0FFF)).append(";\n");
+        } else {
+            source.append(indent).append("ar = ").append(hex(word & 0x0FFF)).append(";\n");
+        }
+
+        switch (handler) {
+            case InstructionTable.AND:
+                source.append(indent).append("dr = ").append(read).append(";\n");
+                source.append(indent).append("ac &= dr & 0xFFFF;\n");
+                break;
+
+            case InstructionTable.ADD:
+                source.append(indent).append("dr = ").append(read).append(";\n");
+                source.append(indent).append("ac += dr & 0xFFFF;\n");
+                source.append(indent).append("carry = ac > 0xFFFF;\n");
+                source.append(indent).append("e = carry;\n");
+                source.append(indent).append("ac &= 0xFFFF;\n");
+                break;
+
+            case InstructionTable.LDA:
+                source.append(indent).append("dr = ").append(read).append(";\n");
+                source.append(indent).append("ac = dr & 0xFFFF;\n");
+                break;
+
+            case InstructionTable.STA:
+                appendWrite(source, indent, direct, page, "(short) ac");
+                writes = true;
+                break;
+
+            case InstructionTable.BUN:
+                source.append(indent).append("pc = ar;\n");
+                break;
+
+            case InstructionTable.BSA:
+                appendWrite(source, indent, direct, page, "(short) " + next);
+                source.append(indent).append("ar = (ar + 1) & 0x0FFF;\n");
+                source.append(indent).append("pc = ar;\n");
+                source.append(indent).append("if (code[(ar - 1) & 0x0FFF]) { s[").append(STATE_DIRTY)
+                        .append("] = (ar - 1) & 0x0FFF; ").append(exit).append(" }\n");
+                break;
+
+            case InstructionTable.ISZ:
+                source.append(indent).append("dr = (short) (").append(read).append(" + 1);\n");
+                appendWrite(source, indent, direct, page, "(short) dr");
+                source.append(indent).append("pc = dr == 0 ? ").append(skip).append(" : ").append(next).append(";\n");
+                writes = true;
+                break;
+
+            case InstructionTable.CLA:
+                source.append(indent).append("ac = 0;\n");
+                break;
+
+            case InstructionTable.CLE:
+                source.append(indent).append("e = false;\n");
+                break;
+
+            case InstructionTable.CMA:
+                source.append(indent).append("ac = ~ac & 0xFFFF;\n");
+                break;
+
+            case InstructionTable.CME:
+                source.append(indent).append("e = !e;\n");
+                break;
+
+            case InstructionTable.CIR:
+                source.append(indent).append("{ boolean lowBit = (ac & 0x01) != 0; ac = (ac >> 1) | (e ? 0x8000 : 0);")
+                        .append(" e = lowBit; }\n");
+                break;
+
+            case InstructionTable.CIL:
+                source.append(indent)
+                        .append("{ boolean highBit = (ac & 0x8000) != 0; ac = ((ac << 1) | (e ? 1 : 0)) & 0xFFFF;")
+                        .append(" e = highBit; }\n");
+                break;
+
+            case InstructionTable.INC:
+                source.append(indent).append("ac++;\n");
+                source.append(indent).append("carry = ac > 0xFFFF;\n");
+                source.append(indent).append("e = carry;\n");
+                source.append(indent).append("ac &= 0xFFFF;\n");
+                break;
+
+            case InstructionTable.SPA:
+                source.append(indent).append("pc = (ac & 0x8000) == 0 ? ").append(skip).append(" : ").append(next)
+                        .append(";\n");
+                break;
+
+            case InstructionTable.SNA:
+                source.append(indent).append("pc = (ac & 0x8000) != 0 ? ").append(skip).append(" : ").append(next)
+                        .append(";\n");
+                break;
+
+            case InstructionTable.SZA:
+                source.append(indent).append("pc = ac == 0 ? ").append(skip).append(" : ").append(next)
+                        .append(";\n");
+                break;
+
+            case InstructionTable.SZE:
+                source.append(indent).append("pc = !e ? ").append(skip).append(" : ").append(next).append(";\n");
+                break;
+
+            default:
+                throw new IllegalArgumentException("Instruction can not be translated: " + hex(word));
+        }
+
+        if (last && !endsBlock(handler))
+            source.append(indent).append("pc = ").append(next).append(";\n");
+
+        if (writes) {
+            source.append(indent).append("if (code[ar]) { s[").append(STATE_DIRTY).append("] = ar;");
+            if (!last)
+                source.append(" pc = ").append(next).append(";");
+            source.append(" ").append(exit).append(" }\n");
+        }
+    }
+
+    static String hex(int value) {
+        return "0x" + Integer.toHexString(value).toUpperCase();
+    }
+}
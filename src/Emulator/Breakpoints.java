@@ -0,0 +1,195 @@
+package Emulator;
+
+import java.util.Arrays;
+
+// Execution breakpoints and memory watchpoints of a BasicComputer (see BasicComputer.setBreakpoints), kept as
+// one bit per address so the interpreter only tests a bit for every instruction and access.
+// An execution breakpoint stops the run before the instruction at its address, optionally only when a register
+// holds a value; the run that starts on it runs it (so continuing from a hit does not hit it again).
+// A watchpoint stops the run after the instruction that read or wrote its word: operands of AND / ADD / LDA /
+// ISZ and indirect pointers are reads, STA / BSA / ISZ and the return address of the interrupt cycle writes.
+// While any is set the computer runs every instruction through the interpreter (as with a profiler); with none
+// set, or none given to the computer, it pays nothing for them.
+public final class Breakpoints {
+
+    public static final int NONE = 0;
+    public static final int EXECUTE = 1;
+    public static final int READ = 2;
+    public static final int WRITE = 3;
+
+    final long[] execute = new long[64];
+    final long[] read = new long[64];
+    final long[] write = new long[64];
+
+    private final Register[] conditionRegister = new Register[4096]; // null for an unconditional breakpoint
+    private final short[] conditionValue = new short[4096];
+    private int set = 0; // bits set over the three maps
+
+    private int hitKind = NONE;
+    private int hitAddress = 0;
+    private long hits = 0;
+
+    public boolean setBreakpoint(int address) {
+        address &= 0x0FFF;
+        conditionRegister[address] = null;
+        setBit(execute, address);
+        return true;
+    }
+
+    // Stops at address only when register holds value there
+    public boolean setBreakpoint(int address, Register register, short value) {
+        address &= 0x0FFF;
+        conditionRegister[address] = register;
+        conditionValue[address] = value;
+        setBit(execute, address);
+        return true;
+    }
+
+    public boolean clearBreakpoint(int address) {
+        address &= 0x0FFF;
+        conditionRegister[address] = null;
+        return clearBit(execute, address);
+    }
+
+    public boolean watchReads(int address) {
+        return setBit(read, address & 0x0FFF);
+    }
+
+    public boolean watchWrites(int address) {
+        return setBit(write, address & 0x0FFF);
+    }
+
+    // Stops watching the word for both reads and writes
+    public boolean unwatch(int address) {
+        boolean reads = clearBit(read, address & 0x0FFF);
+        boolean writes = clearBit(write, address & 0x0FFF);
+        return reads || writes;
+    }
+
+    public boolean clear() {
+        for (int word = 0; word < 64; word++) {
+            execute[word] = 0;
+            read[word] = 0;
+            write[word] = 0;
+        }
+        Arrays.fill(conditionRegister, null);
+        set = 0;
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return set == 0;
+    }
+
+    public boolean isBreakpoint(int address) {
+        return isSet(execute, address & 0x0FFF);
+    }
+
+    public boolean isWatched(int address) {
+        return isSet(read, address & 0x0FFF) || isSet(write, address & 0x0FFF);
+    }
+
+    // What stopped the last run: EXECUTE, READ, WRITE or NONE if nothing did yet
+    public int getHitKind() {
+        return hitKind;
+    }
+
+    // Instruction address for EXECUTE, the word accessed for READ and WRITE
+    public int getHitAddress() {
+        return hitAddress;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    // Whether the breakpoint at pc (its bit is set) stops with these register values, records the hit if so
+    boolean stopsAt(int pc, int ac, int dr, int ar, int ir, int tr, int outr, int inpr) {
+        Register register = conditionRegister[pc];
+        if (register != null) {
+            int value;
+            switch (register) {
+                case AR:
+                    value = ar;
+                    break;
+                case PC:
+                    value = pc;
+                    break;
+                case DR:
+                    value = dr;
+                    break;
+                case AC:
+                    value = ac;
+                    break;
+                case IR:
+                    value = ir;
+                    break;
+                case TR:
+                    value = tr;
+                    break;
+                case OUTR:
+                    value = outr & 0xFF;
+                    break;
+                case INPR:
+                    value = inpr & 0xFF;
+                    break;
+                default: // SC, always 0 between instructions
+                    value = 0;
+                    break;
+            }
+            if ((short) value != conditionValue[pc])
+                return false;
+        }
+
+        return hit(EXECUTE, pc);
+    }
+
+    // Whether a memory reference instruction (handler, word and effective address as fetched) touches a watched
+    // word, records the hit if so
+    boolean accesses(int handler, int word, int address) {
+        if (handler == InstructionTable.STA || handler == InstructionTable.BSA || handler == InstructionTable.ISZ)
+            if (isSet(write, address))
+                return hit(WRITE, address);
+
+        if (handler != InstructionTable.STA && handler != InstructionTable.BSA && handler != InstructionTable.BUN)
+            if (isSet(read, address))
+                return hit(READ, address);
+
+        if (word >= 0x8000 && isSet(read, word & 0x0FFF))
+            return hit(READ, word & 0x0FFF);
+
+        return false;
+    }
+
+    // Whether the word written by something other than an instruction (the interrupt cycle) is watched
+    boolean writes(int address) {
+        return isSet(write, address) && hit(WRITE, address);
+    }
+
+    private boolean hit(int kind, int address) {
+        hitKind = kind;
+        hitAddress = address;
+        hits++;
+        return true;
+    }
+
+    private boolean setBit(long[] map, int address) {
+        if (isSet(map, address))
+            return false;
+        map[address >>> 6] |= 1L << address;
+        set++;
+        return true;
+    }
+
+    private boolean clearBit(long[] map, int address) {
+        if (!isSet(map, address))
+            return false;
+        map[address >>> 6] &= ~(1L << address);
+        set--;
+        return true;
+    }
+
+    private static boolean isSet(long[] map, int address) {
+        return (map[address >>> 6] & 1L << address) != 0;
+    }
+}
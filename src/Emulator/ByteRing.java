@@ -0,0 +1,116 @@
+package Emulator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lock free byte queue between exactly one producer thread and exactly one consumer thread.
+// Neither side ever blocks: offer() takes what fits and poll() returns -1 when empty, so a full or empty
+// ring is seen by the caller and handled as backpressure. The capacity is rounded up to a power of two.
+public final class ByteRing {
+
+    private final byte[] buffer;
+    private final int mask;
+
+    // head is only written by the consumer and tail only by the producer, each side keeps a cached copy of
+    // the other index so it only reads the shared one when the ring looks full (or empty)
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private long cachedHead = 0; // producer side
+    private long cachedTail = 0; // consumer side
+
+    public ByteRing(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30))
+            throw new IllegalArgumentException("Ring capacity must be between 1 and 2^30, not " + capacity);
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+
+        buffer = new byte[size];
+        mask = size - 1;
+    }
+
+    // Producer: true if the byte was added, false if the ring is full
+    public boolean offer(byte value) {
+        long t = tail.get();
+
+        if (t - cachedHead == buffer.length) {
+            cachedHead = head.get();
+            if (t - cachedHead == buffer.length)
+                return false;
+        }
+
+        buffer[(int) t & mask] = value;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    // Producer: adds as many of the bytes as fit, returns how many that was
+    public int offer(byte[] values, int offset, int length) {
+        long t = tail.get();
+        long free = buffer.length - (t - cachedHead);
+
+        if (free < length) {
+            cachedHead = head.get();
+            free = buffer.length - (t - cachedHead);
+        }
+
+        int count = (int) Math.min(free, length);
+        int index = (int) t & mask;
+        int first = Math.min(count, buffer.length - index); // up to the end of the array, then wrap
+
+        System.arraycopy(values, offset, buffer, index, first);
+        System.arraycopy(values, offset + first, buffer, 0, count - first);
+
+        tail.lazySet(t + count);
+        return count;
+    }
+
+    // Consumer: the next byte (0 - 255), or -1 if the ring is empty
+    public int poll() {
+        long h = head.get();
+
+        if (h == cachedTail) {
+            cachedTail = tail.get();
+            if (h == cachedTail)
+                return -1;
+        }
+
+        int value = buffer[(int) h & mask] & 0xFF;
+        head.lazySet(h + 1);
+        return value;
+    }
+
+    // Consumer: takes up to length bytes, returns how many that was
+    public int poll(byte[] values, int offset, int length) {
+        long h = head.get();
+        long available = cachedTail - h;
+
+        if (available < length) {
+            cachedTail = tail.get();
+            available = cachedTail - h;
+        }
+
+        int count = (int) Math.min(available, length);
+        int index = (int) h & mask;
+        int first = Math.min(count, buffer.length - index);
+
+        System.arraycopy(buffer, index, values, offset, first);
+        System.arraycopy(buffer, 0, values, offset + first, count - first);
+
+        head.lazySet(h + count);
+        return count;
+    }
+
+    // Either side, only a hint while the other side is running
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
@@ -0,0 +1,197 @@
+package Emulator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Guest call graph profile (see BasicComputer.setCallProfiler): every cycle is counted against the call stack
+// it ran in, and toCollapsed() writes the stacks in the collapsed format flame graph tools read
+// ("main;MUL;SHIFT 1234" per line, the count being the cycles spent in the last frame itself).
+//
+// BSA X is a call of the subroutine whose return address lives at X, BUN X I returns from it; the interrupt
+// cycle calls "interrupt" (return address at 0). A subroutine keeps its return address in one word, so a
+// second call to a subroutine already on the stack can only come back once: the stack is unwound to the
+// earlier call first, which also keeps it at most as deep as there are subroutines.
+// BUN I through a word no call used is just a jump.
+public final class CallProfiler extends ExecutionProbe {
+
+    private static final int ROOT = 0;
+    private static final int INTERRUPT = -1; // function of the interrupt frame
+
+    // the call tree, node 0 is the root ("main")
+    private int[] parent = new int[64];
+    private int[] function = new int[64]; // address of the return word, INTERRUPT for the interrupt cycle
+    private long[] cycles = new long[64]; // spent in the node itself
+    private int nodes = 1;
+
+    // child of a node for a function, open addressing on parent << 32 | function with linear probing.
+    // The root is never a child, so node 0 marks an empty slot; the table is kept at most half full
+    private long[] childKey = new long[128];
+    private int[] childNode = new int[128];
+
+    // the current stack, frame 0 is the root
+    private final int[] frameNode = new int[4098];
+    private final int[] frameReturn = new int[4098]; // word the return address is in
+    private int depth = 0;
+
+    private final String[] names = new String[4096];
+
+    public CallProfiler() {
+        function[ROOT] = INTERRUPT;
+        frameReturn[0] = -1;
+    }
+
+    @Override
+    void count(int address, int handler, int word, int operand) {
+        cycles[frameNode[depth]] += InstructionTable.CYCLES[word];
+
+        if (handler == InstructionTable.BSA)
+            call(operand);
+        else if (handler == InstructionTable.BUN && word >= 0x8000)
+            ret(word & 0x0FFF);
+    }
+
+    @Override
+    void interrupt() {
+        call(INTERRUPT);
+        cycles[frameNode[depth]] += InstructionTable.INTERRUPT_CYCLES;
+    }
+
+    private void call(int target) {
+        int slot = target == INTERRUPT ? 0 : target;
+
+        for (int frame = depth; frame > 0; frame--)
+            if (frameReturn[frame] == slot) { // called again before it returned
+                depth = frame - 1;
+                break;
+            }
+
+        int node = child(frameNode[depth], target);
+        depth++;
+        frameNode[depth] = node;
+        frameReturn[depth] = slot;
+    }
+
+    private void ret(int pointer) {
+        for (int frame = depth; frame > 0; frame--)
+            if (frameReturn[frame] == pointer) {
+                depth = frame - 1;
+                return;
+            }
+    }
+
+    private int child(int node, int target) {
+        long key = ((long) node << 32) | (target & 0xFFFFFFFFL);
+        int mask = childKey.length - 1;
+        int slot = slot(key, mask);
+        for (; childNode[slot] != 0; slot = slot + 1 & mask)
+            if (childKey[slot] == key)
+                return childNode[slot];
+
+        if (nodes == parent.length) {
+            parent = Arrays.copyOf(parent, nodes * 2);
+            function = Arrays.copyOf(function, nodes * 2);
+            cycles = Arrays.copyOf(cycles, nodes * 2);
+        }
+
+        parent[nodes] = node;
+        function[nodes] = target;
+        childKey[slot] = key;
+        childNode[slot] = nodes;
+        if (nodes * 2 >= childKey.length)
+            growChildren();
+        return nodes++;
+    }
+
+    private void growChildren() {
+        long[] oldKey = childKey;
+        int[] oldNode = childNode;
+        childKey = new long[oldKey.length * 2];
+        childNode = new int[oldNode.length * 2];
+
+        int mask = childKey.length - 1;
+        for (int i = 0; i < oldKey.length; i++) {
+            if (oldNode[i] == 0)
+                continue;
+            int slot = slot(oldKey[i], mask);
+            while (childNode[slot] != 0)
+                slot = slot + 1 & mask;
+            childKey[slot] = oldKey[i];
+            childNode[slot] = oldNode[i];
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        return (int) ((key ^ key >>> 29) * 0x9E3779B97F4A7C15L >>> 40) & mask;
+    }
+
+    // Name shown for the subroutine whose return address is at address (the label of its first word)
+    public boolean setName(int address, String name) {
+        names[address & 0x0FFF] = name;
+        return true;
+    }
+
+    // Forgets the counts and starts again from an empty stack, names are kept
+    public boolean reset() {
+        Arrays.fill(cycles, 0);
+        nodes = 1;
+        Arrays.fill(childNode, 0);
+        depth = 0;
+        return true;
+    }
+
+    // The current stack as in the collapsed output
+    public String getStack() {
+        StringBuilder stack = new StringBuilder("main");
+        for (int frame = 1; frame <= depth; frame++)
+            stack.append(';').append(name(function[frameNode[frame]]));
+        return stack.toString();
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getTotalCycles() {
+        long total = 0;
+        for (int node = 0; node < nodes; node++)
+            total += cycles[node];
+        return total;
+    }
+
+    // Cycles spent in the stack itself, 0 if it never ran
+    public long getCycles(String stack) {
+        for (int node = 0; node < nodes; node++)
+            if (path(node).equals(stack))
+                return cycles[node];
+        return 0;
+    }
+
+    // One line per stack that took cycles: the frames from main down separated by ';', a space and the cycles
+    public String toCollapsed() {
+        StringBuilder collapsed = new StringBuilder();
+        for (int node = 0; node < nodes; node++)
+            if (cycles[node] != 0)
+                collapsed.append(path(node)).append(' ').append(cycles[node]).append('\n');
+        return collapsed.toString();
+    }
+
+    public boolean writeCollapsed(Path path) throws IOException {
+        Files.writeString(path, toCollapsed());
+        return true;
+    }
+
+    private String path(int node) {
+        if (node == ROOT)
+            return "main";
+        return path(parent[node]) + ";" + name(function[node]);
+    }
+
+    private String name(int target) {
+        if (target == INTERRUPT)
+            return "interrupt";
+        return names[target] != null ? names[target] : String.format(Locale.ROOT, "sub_%03X", target);
+    }
+}
@@ -0,0 +1,105 @@
+package Emulator;
+
+import java.util.Arrays;
+
+import Debugger.BasicComputerListener;
+
+// Changes of an observed BasicComputer (see BasicComputer.setObserving) waiting to be handed to its listener.
+// Each change is one int record (kind << 28 | target << 16 | value) in an array allocated once: memory writes
+// are recorded by the interpreter as they happen, registers and flags are compared with the values handed over
+// last time when the batch is delivered. A word written again before that only updates its record, so a batch
+// holds at most one record per word, register and the flags and the array can never fill up.
+final class ChangeLog {
+
+    private static final int MEMORY = 0;
+    private static final int REGISTER = 1;
+    private static final int FLAGS = 2;
+
+    private static final Register[] REGISTERS = Register.values();
+
+    private final int[] records = new int[4096 + REGISTERS.length + 1];
+    private int size = 0;
+    private final int[] slot = new int[4096]; // record of the word in this batch, -1 if not written
+
+    private final short[] registers = new short[REGISTERS.length]; // as last handed over
+    private byte flags;
+
+    ChangeLog(BasicComputer computer) {
+        Arrays.fill(slot, -1);
+        rebase(computer);
+    }
+
+    // Records a write of the word (0 - 4095)
+    void memory(int address, short value) {
+        int index = slot[address];
+        if (index < 0) {
+            index = size++;
+            slot[address] = index;
+        }
+        records[index] = MEMORY << 28 | address << 16 | value & 0xFFFF;
+    }
+
+    // Adds the registers and flags that differ from the last batch to this one
+    void collect(BasicComputer computer) {
+        for (int i = 0; i < REGISTERS.length; i++) {
+            short value = computer.getRegister(REGISTERS[i]);
+            if (value != registers[i]) {
+                registers[i] = value;
+                records[size++] = REGISTER << 28 | i << 16 | value & 0xFFFF;
+            }
+        }
+
+        byte now = computer.getFlags();
+        if (now != flags) {
+            flags = now;
+            records[size++] = FLAGS << 28 | now & 0xFF;
+        }
+    }
+
+    // Hands every record to the listener in the order they were made (memory, then registers, then flags) and
+    // empties the batch
+    boolean deliver(BasicComputerListener listener) {
+        for (int i = 0; i < size; i++) {
+            int record = records[i];
+            switch (record >>> 28) {
+                case MEMORY:
+                    listener.onMemoryChange(target(record), (short) record);
+                    break;
+                case REGISTER:
+                    listener.onRegisterChange(REGISTERS[target(record)], (short) record);
+                    break;
+                default: // FLAGS
+                    listener.onFlagChange();
+                    break;
+            }
+        }
+        clear();
+        return true;
+    }
+
+    // Drops the batch and takes the computer's registers and flags as already handed over
+    boolean rebase(BasicComputer computer) {
+        clear();
+        for (int i = 0; i < REGISTERS.length; i++)
+            registers[i] = computer.getRegister(REGISTERS[i]);
+        flags = computer.getFlags();
+        return true;
+    }
+
+    // The flags were handed over outside of a batch
+    boolean setFlags(byte flags) {
+        this.flags = flags;
+        return true;
+    }
+
+    private void clear() {
+        for (int i = 0; i < size; i++)
+            if (records[i] >>> 28 == MEMORY)
+                slot[target(records[i])] = -1;
+        size = 0;
+    }
+
+    private static int target(int record) {
+        return record >>> 16 & 0x0FFF;
+    }
+}
@@ -0,0 +1,70 @@
+package Emulator;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Reusable computers that all run the same ProgramImage.
+// A released computer is put back by restoring the pristine snapshot of the image, which only touches the pages
+// written since checkout. Devices and scheduled events are dropped, listeners, report intervals and translations
+// stay on the computer for the next user.
+public final class ComputerPool {
+
+    public static final int DEFAULT_MAX_IDLE = 256;
+
+    private final ProgramImage image;
+    private final Snapshot pristine; // state of a computer fresh out of new BasicComputer(image)
+    private final int maxIdle;
+
+    private final ConcurrentLinkedDeque<BasicComputer> idle = new ConcurrentLinkedDeque<BasicComputer>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger createdCount = new AtomicInteger();
+
+    public ComputerPool(ProgramImage image) {
+        this(image, DEFAULT_MAX_IDLE);
+    }
+
+    public ComputerPool(ProgramImage image, int maxIdle) {
+        this.image = image;
+        this.maxIdle = maxIdle;
+        this.pristine = new BasicComputer(image).snapshot();
+    }
+
+    // A computer at the start of the image, reused when one is idle
+    public BasicComputer checkout() {
+        BasicComputer computer = idle.pollFirst();
+
+        if (computer != null) {
+            idleCount.decrementAndGet();
+            return computer;
+        }
+
+        createdCount.incrementAndGet();
+        return new BasicComputer(image);
+    }
+
+    // Resets the computer (it must come from this pool) and keeps it for the next checkout
+    public boolean release(BasicComputer computer) {
+        computer.detachDevices();
+        computer.restore(pristine);
+
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            return false; // pool is full, the computer is left to the garbage collector
+        }
+
+        idle.offerFirst(computer); // most recently used first, its pages are still in cache
+        return true;
+    }
+
+    public ProgramImage getImage() {
+        return image;
+    }
+
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    public int getCreatedCount() {
+        return createdCount.get();
+    }
+}
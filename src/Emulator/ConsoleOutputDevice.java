@@ -0,0 +1,90 @@
+package Emulator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Output device writing every byte of OUT straight to a stream on the computer thread (the command line
+// runner streams OUTR to stdout with it). FGO is set again latency cycles after each byte, like
+// TimedOutputDevice, so cycle counts do not depend on how fast the stream is.
+// The stream is flushed after every newline and by flush().
+public final class ConsoleOutputDevice implements IODevice, ScheduledEvent {
+
+    private final OutputStream output;
+    private final long latency;
+
+    private EventScheduler scheduler;
+    private long readyAt = 0; // cycle the last byte is done at
+    private boolean scheduled = false; // an event is pending
+    private long written = 0;
+    private IOException failure; // first write that failed, later bytes are dropped
+
+    public ConsoleOutputDevice(OutputStream output, long latency) {
+        this.output = output;
+        this.latency = latency;
+    }
+
+    @Override
+    public void attach(BasicComputer computer, EventScheduler scheduler, long cycle) {
+        this.scheduler = scheduler;
+        scheduled = true;
+        scheduler.schedule(cycle, this); // ready from the start
+    }
+
+    @Override
+    public void onInput(long cycle) {
+    }
+
+    @Override
+    public void onOutput(byte value, long cycle) {
+        if (failure == null) {
+            try {
+                output.write(value);
+                if (value == '\n')
+                    output.flush();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        written++;
+        readyAt = cycle + latency;
+        if (!scheduled) {
+            scheduled = true;
+            scheduler.schedule(readyAt, this);
+        }
+    }
+
+    // As in TimedOutputDevice, an event pending from before the last OUT comes too early and moves to readyAt
+    @Override
+    public void fire(BasicComputer computer, long cycle) {
+        if (cycle < readyAt) {
+            scheduler.schedule(readyAt, this);
+            return;
+        }
+        scheduled = false;
+        computer.setFGO(1);
+    }
+
+    public boolean flush() {
+        if (failure != null)
+            return false;
+
+        try {
+            output.flush();
+        } catch (IOException e) {
+            failure = e;
+            return false;
+        }
+        return true;
+    }
+
+    // Bytes the guest wrote, including any the stream could not take
+    public long getBytesWritten() {
+        return written;
+    }
+
+    // The first write error of the stream, or null
+    public IOException getFailure() {
+        return failure;
+    }
+}
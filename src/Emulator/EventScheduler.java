@@ -0,0 +1,106 @@
+package Emulator;
+
+import java.util.Arrays;
+
+// Events of one computer, ordered by the cycle they fire at.
+// The interpreter only looks at the scheduler when the cycle count reaches nextTime(), so a computer with
+// nothing scheduled pays one compare per instruction. Kept as a binary heap over plain arrays (the interpreter
+// needs the exact next deadline at all times), events with the same cycle fire in the order they were added.
+public final class EventScheduler {
+
+    private long[] times = new long[16];
+    private long[] order = new long[16]; // tie breaker, keeps same cycle events first in first out
+    private ScheduledEvent[] events = new ScheduledEvent[16];
+    private int size = 0;
+    private long added = 0;
+
+    public void schedule(long cycle, ScheduledEvent event) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            order = Arrays.copyOf(order, size * 2);
+            events = Arrays.copyOf(events, size * 2);
+        }
+
+        int i = size++;
+        times[i] = cycle;
+        order[i] = added++;
+        events[i] = event;
+        siftUp(i);
+    }
+
+    // Cycle of the earliest event (Long.MAX_VALUE when nothing is scheduled)
+    public long nextTime() {
+        return size == 0 ? Long.MAX_VALUE : times[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            events[i] = null;
+        size = 0;
+    }
+
+    // Fires every event due at or before the given cycle, including ones scheduled while firing
+    void runDue(BasicComputer computer, long cycle) {
+        while (size > 0 && times[0] <= cycle) {
+            long time = times[0];
+            ScheduledEvent event = events[0];
+
+            size--;
+            times[0] = times[size];
+            order[0] = order[size];
+            events[0] = events[size];
+            events[size] = null;
+            siftDown(0);
+
+            event.fire(computer, time);
+        }
+    }
+
+    private boolean before(int a, int b) {
+        return times[a] < times[b] || (times[a] == times[b] && order[a] < order[b]);
+    }
+
+    private void swap(int a, int b) {
+        long time = times[a];
+        times[a] = times[b];
+        times[b] = time;
+
+        long index = order[a];
+        order[a] = order[b];
+        order[b] = index;
+
+        ScheduledEvent event = events[a];
+        events[a] = events[b];
+        events[b] = event;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0 && before(i, (i - 1) / 2)) {
+            swap(i, (i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+
+            if (left < size && before(left, smallest))
+                smallest = left;
+            if (right < size && before(right, smallest))
+                smallest = right;
+
+            if (smallest == i)
+                return;
+
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+}
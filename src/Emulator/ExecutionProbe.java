@@ -0,0 +1,44 @@
+package Emulator;
+
+// What the interpreter tells a profiler or History (see BasicComputer.setProfiler, setCallProfiler, setHistory).
+// While one is set every instruction goes through the interpreter and is passed here, one call each.
+abstract class ExecutionProbe {
+
+    // One fetched instruction at address, operand is AR after the indirect fetch
+    abstract void count(int address, int handler, int word, int operand);
+
+    // The interrupt cycle, it stores PC at 0 and goes to 1
+    abstract void interrupt();
+
+    // Device events due by cycle have just run (only History looks at what they did)
+    void events(long cycle) {
+    }
+
+    // Both probes, for a computer with more than one of them at once
+    static ExecutionProbe of(ExecutionProbe first, ExecutionProbe second) {
+        if (first == null)
+            return second;
+        if (second == null)
+            return first;
+
+        return new ExecutionProbe() {
+            @Override
+            void count(int address, int handler, int word, int operand) {
+                first.count(address, handler, word, operand);
+                second.count(address, handler, word, operand);
+            }
+
+            @Override
+            void interrupt() {
+                first.interrupt();
+                second.interrupt();
+            }
+
+            @Override
+            void events(long cycle) {
+                first.events(cycle);
+                second.events(cycle);
+            }
+        };
+    }
+}
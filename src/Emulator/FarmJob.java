@@ -0,0 +1,24 @@
+package Emulator;
+
+// One program run for the MachineFarm: a memory image, the bytes fed through INPR and an instruction budget
+public final class FarmJob {
+
+    final ProgramImage image; // shared by every run of the job, each run copies the pages it writes
+    final byte[] input;
+    final long maxInstructions;
+
+    public FarmJob(ProgramImage image, byte[] input, long maxInstructions) {
+        this.image = image;
+        this.input = input == null ? new byte[0] : input;
+        this.maxInstructions = maxInstructions;
+    }
+
+    public FarmJob(ProgramImage image, byte[] input) {
+        this(image, input, Long.MAX_VALUE);
+    }
+
+    // Jobs running the same program should share one ProgramImage instead
+    public FarmJob(short[] image, byte[] input, long maxInstructions) {
+        this(ProgramImage.of(image), input, maxInstructions);
+    }
+}
@@ -0,0 +1,52 @@
+package Emulator;
+
+// Final state of a FarmJob
+public final class FarmResult {
+
+    private final Snapshot state; // registers, flags and memory when the job ended
+    private final byte[] output;
+    private final long wallTime; // nanoseconds
+
+    FarmResult(Snapshot state, byte[] output, long wallTime) {
+        this.state = state;
+        this.output = output;
+        this.wallTime = wallTime;
+    }
+
+    public short getRegister(Register register) {
+        return state.getRegister(register);
+    }
+
+    public byte getFlags() {
+        return state.getFlags();
+    }
+
+    // False if the instruction budget ran out before HLT
+    public boolean isHalted() {
+        return (state.getFlags() & 0b1) != 0;
+    }
+
+    public short getMemory(int address) {
+        return state.getMemory(address);
+    }
+
+    public Snapshot getSnapshot() {
+        return state;
+    }
+
+    public byte[] getOutput() {
+        return output.clone();
+    }
+
+    public long getInstructionsRetired() {
+        return state.getInstructionsRetired();
+    }
+
+    public long getCyclesElapsed() {
+        return state.getCyclesElapsed();
+    }
+
+    public long getWallTime() {
+        return wallTime;
+    }
+}
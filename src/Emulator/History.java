@@ -0,0 +1,431 @@
+package Emulator;
+
+import Debugger.Logger;
+
+// The recorded past of a BasicComputer (see BasicComputer.setHistory and Debugger.StateTracker), so it can be
+// moved back to any instruction it ran since recording began, stepped backwards and asked who last wrote a word.
+//
+// Runs made through forward() are recorded. A checkpoint (a Snapshot, sharing every page not written since the
+// one before) is taken every interval instructions. The device events are logged (the cycle they were seen at,
+// then INPR and the S / IEN / FGI / FGO flags they left) together with the address of every memory write.
+// Going to an instruction restores the checkpoint before it and replays from there. The logged events stand in
+// for the devices, so a replay is exact even for programs doing I/O, and no device sees anything twice.
+// A seek replays at most interval instructions. Memory stays bounded however long the computer runs: the oldest
+// checkpoint (and the events before it) is dropped once maxCheckpoints are kept, and the write log is a ring.
+// The past can not be changed: forward() from an earlier instruction replays what happened up to the latest
+// recorded one and only then runs live. If the registers or flags are changed by hand while in the past, the
+// history after that point is dropped, but the devices stay where the latest instruction left them.
+// A run that does not go through forward() starts the history over. While recording, every instruction goes
+// through the interpreter (as with a profiler).
+public final class History extends ExecutionProbe {
+
+    private static final Register[] REGISTERS = Register.values();
+    private static final int IO_FLAGS = 0b1111; // S, IEN, FGI and FGO as in BasicComputer.getFlags()
+
+    private final BasicComputer computer;
+    private final long interval;
+
+    // checkpoints, a ring with the oldest at first; their instructions always increase
+    private final Snapshot[] checkpoints;
+    private final long[] checkpointEvents; // sequence number of the first event after each checkpoint
+    private int first = 0;
+    private int count = 0;
+    private Snapshot present; // state after the latest recorded instruction
+
+    // device events since the oldest checkpoint, a growing ring of (cycle, INPR << 8 | flags)
+    private long[] eventCycles = new long[64];
+    private short[] eventStates = new short[64];
+    private int eventStart = 0;
+    private int eventCount = 0;
+    private long eventBase = 0; // sequence number of the oldest event kept
+    private long cursor = 0; // sequence number of the first event the computer's state has not seen yet
+
+    // memory writes, a ring of (instructions retired once the word was written) << 12 | address
+    private final long[] writes;
+    private long written = 0;
+
+    private long instructions; // instructions retired, counted by the probe while running live
+
+    // the computer as the last call left it, anything else was done by hand
+    private final short[] expected = new short[REGISTERS.length];
+    private byte expectedFlags;
+    private long expectedInstructions;
+    private long expectedCycles;
+
+    // the hit found by scan()
+    private int hitCheckpoint;
+    private int hitOrdinal;
+
+    // A checkpoint every 65536 instructions, 256 of them (the last 16 million instructions can be gone back to)
+    // and the last 262144 writes
+    public History(BasicComputer computer) {
+        this(computer, 65536, 256, 1 << 18);
+    }
+
+    public History(BasicComputer computer, long interval, int maxCheckpoints, int maxWrites) {
+        if (interval < 1 || maxCheckpoints < 1 || maxWrites < 1)
+            throw new IllegalArgumentException("History sizes must be positive, not " + interval + ", "
+                    + maxCheckpoints + " and " + maxWrites);
+
+        this.computer = computer;
+        this.interval = interval;
+        checkpoints = new Snapshot[maxCheckpoints];
+        checkpointEvents = new long[maxCheckpoints];
+        writes = new long[maxWrites];
+
+        clear();
+    }
+
+    @Override
+    void count(int address, int handler, int word, int operand) {
+        instructions++;
+        if (handler == InstructionTable.STA || handler == InstructionTable.BSA || handler == InstructionTable.ISZ)
+            writes[(int) (written++ % writes.length)] = instructions << 12 | operand;
+    }
+
+    @Override
+    void interrupt() {
+        writes[(int) (written++ % writes.length)] = instructions << 12;
+    }
+
+    @Override
+    void events(long cycle) {
+        if (eventCount == eventCycles.length) {
+            long[] cycles = new long[eventCount * 2];
+            short[] states = new short[eventCount * 2];
+            for (int i = 0; i < eventCount; i++) {
+                cycles[i] = eventCycles[(eventStart + i) % eventCount];
+                states[i] = eventStates[(eventStart + i) % eventCount];
+            }
+            eventCycles = cycles;
+            eventStates = states;
+            eventStart = 0;
+        }
+
+        int index = (eventStart + eventCount++) % eventCycles.length;
+        eventCycles[index] = cycle;
+        eventStates[index] = (short) ((computer.getRegister(Register.INPR) & 0xFF) << 8
+                | computer.getFlags() & IO_FLAGS);
+        cursor++;
+    }
+
+    // Forgets the past, recording starts again from the computer as it is now
+    public boolean clear() {
+        count = 0;
+        eventCount = 0;
+        eventBase = 0;
+        cursor = 0;
+        written = 0;
+
+        checkpoint();
+        present = computer.snapshot(present != null ? present : new Snapshot());
+        remember();
+        return true;
+    }
+
+    // Instructions retired at the oldest point that can be gone back to
+    public long getOldest() {
+        return checkpoint(0).instructionsRetired;
+    }
+
+    // Instructions retired at the latest point recorded
+    public long getPresent() {
+        return present.instructionsRetired;
+    }
+
+    // Runs at most maxInstructions instructions forward, through the recorded past first and then live, stopping
+    // at the computer's breakpoints on the way. Returns the instructions run
+    public long forward(long maxInstructions) {
+        sync();
+
+        long done = 0;
+        long position = computer.getInstructionsRetired();
+
+        if (position < getPresent() && maxInstructions > 0) {
+            long target = position + Math.min(maxInstructions, getPresent() - position);
+            done = replay(target - position, armed(computer.getBreakpoints()), false);
+
+            if (computer.isPaused()) {
+                computer.everythingChanged();
+                computer.announceBreakpoint();
+                remember();
+                return done;
+            }
+
+            if (computer.getInstructionsRetired() == getPresent()) {
+                computer.restoreState(present);
+                cursor = eventBase + eventCount;
+            }
+            computer.everythingChanged();
+        }
+
+        while (done < maxInstructions && !computer.isStopped()) {
+            long next = checkpoint(count - 1).instructionsRetired + interval;
+
+            instructions = computer.getInstructionsRetired();
+            // only an instruction forward() started on goes past its breakpoint, not one a chunk starts on
+            long ran = computer.run(Math.min(maxInstructions - done, next - instructions), done > 0);
+            done += ran;
+
+            if (computer.getInstructionsRetired() >= next)
+                checkpoint();
+            if (computer.isPaused() || ran == 0)
+                break;
+        }
+
+        if (computer.getInstructionsRetired() >= getPresent())
+            present = computer.snapshot(present);
+        remember();
+        return done;
+    }
+
+    // Goes to the point where the computer had retired the given number of instructions
+    public boolean seek(long target) {
+        sync();
+
+        if (target < getOldest() || target > getPresent()) {
+            Logger.Warn("Instruction " + target + " Is Not In The History (" + getOldest() + " - " + getPresent()
+                    + ")");
+            return false;
+        }
+
+        if (target == getPresent()) {
+            computer.restoreState(present);
+            cursor = eventBase + eventCount;
+        } else {
+            rewind(checkpointAt(target));
+            replay(target - computer.getInstructionsRetired(), null, false);
+        }
+
+        computer.everythingChanged();
+        remember();
+        return true;
+    }
+
+    // Goes back one instruction
+    public boolean stepBack() {
+        sync();
+        return seek(computer.getInstructionsRetired() - 1);
+    }
+
+    // Goes back to the last breakpoint or watchpoint (of the computer) hit before this point, paused as a run would
+    // have been there. Without one it goes to the oldest point and returns false
+    public boolean reverseContinue() {
+        sync();
+
+        Breakpoints stops = armed(computer.getBreakpoints());
+        long end = computer.getInstructionsRetired();
+
+        if (stops == null || !scan(stops, end, false)) {
+            seek(getOldest());
+            return false;
+        }
+
+        // the same replay again, up to the hit that was found
+        rewind(hitCheckpoint);
+        for (int i = 0; i <= hitOrdinal; i++)
+            replay(end - computer.getInstructionsRetired(), stops, i == 0);
+
+        computer.everythingChanged();
+        computer.announceBreakpoint();
+        remember();
+        return true;
+    }
+
+    // Instructions retired once the word was last written before this point (for the interrupt cycle, the
+    // instructions retired when it was taken), -1 if it was not written in the recorded past
+    public long lastWrite(int address) {
+        sync();
+        address &= 0x0FFF;
+
+        long position = computer.getInstructionsRetired();
+        long oldest = Math.max(0, written - writes.length);
+
+        for (long i = written - 1; i >= oldest; i--) {
+            long entry = writes[(int) (i % writes.length)];
+            if ((entry & 0x0FFF) == address && entry >>> 12 <= position)
+                return entry >>> 12;
+        }
+
+        if (oldest == 0)
+            return -1;
+
+        // older than the write log, look for it with a watchpoint and come back
+        long end = Math.min(position, writes[(int) (oldest % writes.length)] >>> 12);
+        Breakpoints watch = new Breakpoints();
+        watch.watchWrites(address);
+
+        Snapshot here = computer.snapshot();
+        long hereCursor = cursor;
+        long found = -1;
+
+        if (scan(watch, end, true)) {
+            rewind(hitCheckpoint);
+            for (int i = 0; i <= hitOrdinal; i++)
+                replay(end - computer.getInstructionsRetired(), watch, i == 0);
+            found = computer.getInstructionsRetired();
+        }
+
+        computer.restoreState(here);
+        cursor = hereCursor;
+        return found;
+    }
+
+    // Finds the last hit of stops before end (at end too with inclusive), from the latest checkpoint back.
+    // Leaves the checkpoint and the number of hits before it in that checkpoint's replay in hitCheckpoint and
+    // hitOrdinal, the computer is left anywhere
+    private boolean scan(Breakpoints stops, long end, boolean inclusive) {
+        long stop = end;
+
+        for (int k = checkpointAt(end - 1); k >= 0; k--) {
+            rewind(k);
+
+            int hits = 0;
+            int found = -1;
+            while (computer.getInstructionsRetired() < stop) {
+                replay(stop - computer.getInstructionsRetired(), stops, hits == 0);
+                if (!computer.isPaused())
+                    break;
+
+                if (computer.getInstructionsRetired() < stop || inclusive)
+                    found = hits;
+                hits++;
+            }
+
+            if (found >= 0) {
+                hitCheckpoint = k;
+                hitOrdinal = found;
+                return true;
+            }
+
+            stop = checkpoint(k).instructionsRetired;
+            inclusive = true; // a hit just before the next checkpoint is before end
+        }
+        return false;
+    }
+
+    // Back at checkpoint k, with the events after it to come
+    private void rewind(int k) {
+        computer.restoreState(checkpoint(k));
+        cursor = checkpointEvents[(first + k) % checkpoints.length];
+    }
+
+    // Replays instructions from the current state with the logged events from cursor on
+    private long replay(long instructions, Breakpoints stops, boolean breakAtStart) {
+        EventScheduler recorded = new EventScheduler();
+        Replayer replayer = new Replayer(recorded);
+        if (cursor < eventBase + eventCount)
+            recorded.schedule(eventCycle(cursor), replayer);
+
+        long ran = computer.replay(instructions, recorded, stops, breakAtStart);
+        cursor = replayer.next;
+        return ran;
+    }
+
+    // Fires the logged events one after the other, each scheduling the next
+    private final class Replayer implements ScheduledEvent {
+        private final EventScheduler scheduler;
+        long next = cursor;
+
+        Replayer(EventScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void fire(BasicComputer computer, long cycle) {
+            short state = eventStates[eventIndex(next)];
+            computer.setIO((byte) (state >>> 8), state & IO_FLAGS);
+
+            next++;
+            if (next < eventBase + eventCount)
+                scheduler.schedule(eventCycle(next), this);
+        }
+    }
+
+    // Changes made by hand since the last call: a program loaded or a snapshot restored starts over, registers or
+    // flags changed in the past drop what came after them
+    private void sync() {
+        if (computer.getInstructionsRetired() != expectedInstructions
+                || computer.getCyclesElapsed() != expectedCycles) {
+            clear();
+            return;
+        }
+
+        boolean changed = computer.getFlags() != expectedFlags;
+        for (int i = 0; i < REGISTERS.length; i++)
+            changed |= computer.getRegister(REGISTERS[i]) != expected[i];
+
+        if (!changed)
+            return;
+
+        long position = computer.getInstructionsRetired();
+        if (position < getPresent()) {
+            Logger.Warn("History After Instruction " + position + " Dropped, The Past Was Changed");
+
+            while (count > 0 && checkpoint(count - 1).instructionsRetired >= position)
+                count--;
+            eventCount = (int) (cursor - eventBase);
+            long oldest = Math.max(0, written - writes.length);
+            while (written > oldest && writes[(int) ((written - 1) % writes.length)] >>> 12 > position)
+                written--;
+        }
+
+        checkpoint();
+        present = computer.snapshot(present);
+        remember();
+    }
+
+    private void checkpoint() {
+        long now = computer.getInstructionsRetired();
+
+        if (count > 0 && checkpoint(count - 1).instructionsRetired == now) {
+            count--; // taken again
+        } else if (count == checkpoints.length) {
+            first = (first + 1) % checkpoints.length;
+            count--;
+
+            // events before the oldest checkpoint are never replayed again
+            long drop = checkpointEvents[first] - eventBase;
+            eventStart = (int) ((eventStart + drop) % eventCycles.length);
+            eventCount -= drop;
+            eventBase += drop;
+        }
+
+        int slot = (first + count++) % checkpoints.length;
+        checkpoints[slot] = computer.snapshot(checkpoints[slot] != null ? checkpoints[slot] : new Snapshot());
+        checkpointEvents[slot] = cursor;
+    }
+
+    private Snapshot checkpoint(int k) {
+        return checkpoints[(first + k) % checkpoints.length];
+    }
+
+    // The latest checkpoint at or before the instruction
+    private int checkpointAt(long instruction) {
+        int k = count - 1;
+        while (k > 0 && checkpoint(k).instructionsRetired > instruction)
+            k--;
+        return k;
+    }
+
+    private int eventIndex(long sequence) {
+        return (int) ((eventStart + sequence - eventBase) % eventCycles.length);
+    }
+
+    private long eventCycle(long sequence) {
+        return eventCycles[eventIndex(sequence)];
+    }
+
+    private void remember() {
+        for (int i = 0; i < REGISTERS.length; i++)
+            expected[i] = computer.getRegister(REGISTERS[i]);
+        expectedFlags = computer.getFlags();
+        expectedInstructions = computer.getInstructionsRetired();
+        expectedCycles = computer.getCyclesElapsed();
+    }
+
+    // The breakpoints if any are set
+    private static Breakpoints armed(Breakpoints stops) {
+        return stops != null && !stops.isEmpty() ? stops : null;
+    }
+}
@@ -0,0 +1,16 @@
+package Emulator;
+
+// A device on INPR or OUTR. The computer calls it when the guest carries out INP or OUT,
+// and the device answers by scheduling events (raising FGI / FGO) on the computer's EventScheduler.
+public interface IODevice {
+
+    // Called when the device is set on a computer, at the computer's current cycle
+    void attach(BasicComputer computer, EventScheduler scheduler, long cycle);
+
+    // The guest read INPR (INP), FGI has just been cleared
+    void onInput(long cycle);
+
+    // The guest wrote OUTR (OUT), FGO has just been cleared
+    void onOutput(byte value, long cycle);
+
+}
@@ -0,0 +1,405 @@
+package Emulator;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import Debugger.Logger;
+import Exceptions.TranslationFailed;
+
+// Ahead of time translation of a whole memory image.
+// Every block reachable from the reset (0) and interrupt (1) entry points is translated into one Java class
+// that dispatches on PC, and the compiled class file is cached on disk under the hash of the image.
+// The cache directory must belong to the user and be closed to everyone else, and every entry carries an HMAC
+// made with a key only that directory holds: an entry that does not verify is translated again, never loaded.
+public final class ImageTranslator {
+
+    static final int VERSION = 3; // bump when the generated code changes, old cache entries are then ignored
+
+    public static final String CACHE_DIRECTORY = Paths
+            .get(System.getProperty("user.home"), ".cache", "basic-computer-translations").toString();
+
+    private static final int MAX_LOADED = 64; // translations kept in memory, the least recently used goes first
+    private static final byte[] MAGIC = { 'B', 'C', 'T', VERSION }; // starts every cache entry
+    private static final int KEY_LENGTH = 32;
+    private static final int MAC_LENGTH = 32;
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private static final LinkedHashMap<String, TranslatedImage> loaded = new LinkedHashMap<String, TranslatedImage>(
+            16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TranslatedImage> eldest) {
+            return size() > MAX_LOADED;
+        }
+    };
+
+    private ImageTranslator() {
+    }
+
+    public static TranslatedImage translate(short[] image) throws TranslationFailed {
+        return translate(image, Paths.get(CACHE_DIRECTORY));
+    }
+
+    public static TranslatedImage translate(ProgramImage image) throws TranslationFailed {
+        return translate(image.toArray(), Paths.get(CACHE_DIRECTORY));
+    }
+
+    public static synchronized TranslatedImage translate(short[] image, Path cacheDirectory)
+            throws TranslationFailed {
+        String hash = hash(image);
+
+        TranslatedImage translated = loaded.get(hash);
+        if (translated != null)
+            return translated;
+
+        int[] blockLengths = findBlocks(image);
+        String className = "TranslatedImage_" + hash.substring(0, 16);
+        Path entryPath = cacheDirectory.resolve(hash + ".translation");
+        byte[] key = cacheKey(cacheDirectory); // null if the directory can not be trusted, nothing is cached then
+
+        TranslatedBlock program = null;
+
+        if (key != null && Files.isRegularFile(entryPath)) {
+            try {
+                byte[] classFile = unseal(Files.readAllBytes(entryPath), hash, key);
+                if (classFile == null)
+                    Logger.Warn("Cached Translation At " + entryPath + " Failed Verification, Translating Again");
+                else {
+                    program = define(classFile, className);
+                    Logger.Log("Translated Image Loaded From " + entryPath);
+                }
+            } catch (IOException | ReflectiveOperationException | LinkageError e) {
+                Logger.Warn("Cached Translation At " + entryPath + " Is Unusable, Translating Again");
+            }
+        }
+
+        if (program == null) {
+            byte[] classFile = SourceCompiler.compile("Emulator." + className,
+                    generateSource(className, image, blockLengths));
+
+            if (classFile == null) {
+                Logger.Error("Image " + hash + " could not be translated");
+                throw new TranslationFailed("Image " + hash + " could not be translated");
+            }
+
+            try {
+                program = define(classFile, className);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                Logger.Error("Translated image " + hash + " could not be loaded: " + e);
+                throw new TranslationFailed("Translated image " + hash + " could not be loaded: " + e);
+            }
+
+            if (key != null)
+                store(entryPath, seal(classFile, hash, key));
+        }
+
+        translated = build(hash, program, image, blockLengths);
+        loaded.put(hash, translated);
+
+        Logger.Declare("Image Translated (" + translated.getBlockCount() + " Blocks)");
+        return translated;
+    }
+
+    // Source of the class translate() would compile, for reading or for building it some other way
+    public static String generateSource(short[] image) {
+        return generateSource("TranslatedImage_" + hash(image).substring(0, 16), image, findBlocks(image));
+    }
+
+    // SHA-256 of the translator version and the 4096 words
+    public static String hash(short[] image) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            digest.update((byte) VERSION);
+            for (int i = 0; i < 4096; i++) {
+                digest.update((byte) (image[i] >> 8));
+                digest.update((byte) image[i]);
+            }
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest())
+                hex.append(String.format("%02x", b));
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Length of the block at every reachable leader (0 everywhere else)
+    static int[] findBlocks(short[] image) {
+        int[] blockLengths = new int[4096];
+        boolean[] visited = new boolean[4096];
+        ArrayDeque<Integer> work = new ArrayDeque<Integer>();
+
+        work.push(0); // reset
+        work.push(1); // interrupt service routine
+
+        while (!work.isEmpty()) {
+            int start = work.pop();
+
+            if (visited[start])
+                continue;
+            visited[start] = true;
+
+            int length = BlockTranslator.blockLength(start, image);
+
+            if (length == 0) { // I/O or HLT, carried out by the interpreter
+                int handler = InstructionTable.HANDLER[image[start] & 0xFFFF];
+
+                if (handler >= InstructionTable.INP && handler <= InstructionTable.IOF)
+                    work.push((start + 1) & 0x0FFF);
+                if (handler == InstructionTable.SKI || handler == InstructionTable.SKO)
+                    work.push((start + 2) & 0x0FFF);
+                continue;
+            }
+
+            blockLengths[start] = length;
+
+            for (int i = 0; i < length; i++) {
+                int address = (start + i) & 0x0FFF;
+                int word = image[address] & 0xFFFF;
+                int handler = InstructionTable.HANDLER[word];
+                boolean direct = word < 0x8000;
+
+                if (handler == InstructionTable.BUN && direct)
+                    work.push(word & 0x0FFF);
+
+                if (handler == InstructionTable.BSA) {
+                    work.push((address + 1) & 0x0FFF); // where the subroutine returns to
+                    if (direct)
+                        work.push((word + 1) & 0x0FFF);
+                }
+
+                if (BlockTranslator.isSkip(handler)) {
+                    work.push((address + 1) & 0x0FFF);
+                    work.push((address + 2) & 0x0FFF);
+                }
+
+                if (i == length - 1 && !BlockTranslator.endsBlock(handler))
+                    work.push((address + 1) & 0x0FFF);
+            }
+        }
+
+        return blockLengths;
+    }
+
+    private static String generateSource(String className, short[] image, int[] blockLengths) {
+        StringBuilder source = new StringBuilder();
+
+        source.append("package Emulator;\n\n");
+        source.append("final class ").append(className).append(" implements TranslatedBlock {\n");
+        source.append("    public long execute(long[] s, PagedMemory m, boolean[] code, long budget) {\n");
+        source.append("        long retired = 0;\n");
+        source.append("        long cycles = 0;\n");
+        source.append("        s[").append(BlockTranslator.STATE_DIRTY).append("] = -1;\n");
+        source.append("        loop: while (true) {\n");
+        source.append("            switch ((int) s[").append(BlockTranslator.STATE_PC).append("]) {\n");
+
+        for (int start = 0; start < 4096; start++) {
+            if (blockLengths[start] == 0)
+                continue;
+
+            source.append("                case ").append(BlockTranslator.hex(start)).append(":\n");
+            source.append("                    if (retired + ").append(blockLengths[start])
+                    .append(" > budget)\n");
+            source.append("                        break loop;\n");
+            source.append("                    retired += b").append(Integer.toHexString(start))
+                    .append("(s, m, code);\n");
+            source.append("                    break;\n");
+        }
+
+        source.append("                default:\n");
+        source.append("                    break loop;\n");
+        source.append("            }\n");
+        source.append("            cycles += s[").append(BlockTranslator.STATE_CYCLES).append("];\n");
+        source.append("            if (s[").append(BlockTranslator.STATE_DIRTY).append("] >= 0)\n");
+        source.append("                break;\n");
+        source.append("        }\n");
+        source.append("        s[").append(BlockTranslator.STATE_CYCLES).append("] = cycles;\n");
+        source.append("        return retired;\n");
+        source.append("    }\n");
+
+        for (int start = 0; start < 4096; start++) {
+            if (blockLengths[start] == 0)
+                continue;
+
+            source.append("\n");
+            source.append("    private static long b").append(Integer.toHexString(start))
+                    .append("(long[] s, PagedMemory m, boolean[] code) {\n");
+            BlockTranslator.appendStateLoad(source, "        ");
+            BlockTranslator.appendPageLoad(source, "        ", start, blockLengths[start], image);
+            source.append("        long retired = 0;\n");
+            source.append("        long cycles = 0;\n");
+            source.append("        block: {\n");
+            BlockTranslator.appendBlock(source, "            ", start, blockLengths[start], image, "break block;");
+            source.append("        }\n");
+            BlockTranslator.appendStateStore(source, "        ");
+            source.append("        return retired;\n");
+            source.append("    }\n");
+        }
+
+        source.append("}\n");
+
+        return source.toString();
+    }
+
+    private static TranslatedImage build(String hash, TranslatedBlock program, short[] image, int[] blockLengths) {
+        int count = 0;
+        for (int length : blockLengths)
+            if (length > 0)
+                count++;
+
+        int[] leaders = new int[count];
+        int[] lengths = new int[count];
+        boolean[] covered = new boolean[4096];
+        short[] words = new short[4096];
+
+        count = 0;
+        for (int start = 0; start < 4096; start++) {
+            if (blockLengths[start] == 0)
+                continue;
+
+            leaders[count] = start;
+            lengths[count] = blockLengths[start];
+            count++;
+
+            for (int i = 0; i < blockLengths[start]; i++) {
+                int address = (start + i) & 0x0FFF;
+                covered[address] = true;
+                words[address] = image[address];
+            }
+        }
+
+        return new TranslatedImage(hash, program, leaders, lengths, covered, words);
+    }
+
+    // Defined without running its initializer until the class turned out to be the one expected
+    private static TranslatedBlock define(byte[] classFile, String className) throws ReflectiveOperationException {
+        Class<?> translated = MethodHandles.lookup().defineHiddenClass(classFile, false).lookupClass();
+
+        if (!translated.getName().startsWith("Emulator." + className + "/")
+                || !TranslatedBlock.class.isAssignableFrom(translated))
+            throw new ClassFormatError("Expected Emulator." + className + ", found " + translated.getName());
+
+        return (TranslatedBlock) translated.getDeclaredConstructor().newInstance();
+    }
+
+    // The key the entries of the directory are signed with, created along with the directory.
+    // Null (and nothing cached) if the directory is not private to this user or the key can not be had
+    private static byte[] cacheKey(Path directory) {
+        try {
+            boolean posix = directory.getFileSystem().supportedFileAttributeViews().contains("posix");
+
+            if (!Files.isDirectory(directory)) {
+                if (posix)
+                    Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+                else
+                    Files.createDirectories(directory);
+            }
+
+            // without POSIX permissions (Windows) the directory is left to the user's profile being private
+            if (posix && !isPrivate(directory)) {
+                Logger.Warn("Translation Cache " + directory + " Is Open To Other Users, Translations Are Not Cached");
+                return null;
+            }
+
+            Path keyPath = directory.resolve("key");
+            try {
+                if (posix)
+                    Files.createFile(keyPath, PosixFilePermissions.asFileAttribute(
+                            PosixFilePermissions.fromString("rw-------")));
+                else
+                    Files.createFile(keyPath);
+
+                byte[] key = new byte[KEY_LENGTH];
+                new SecureRandom().nextBytes(key);
+                Files.write(keyPath, key);
+                return key;
+            } catch (FileAlreadyExistsException e) {
+                // made earlier, or just now by another process (then it may not be written yet)
+            }
+
+            byte[] key = Files.readAllBytes(keyPath);
+            return key.length == KEY_LENGTH ? key : null;
+        } catch (IOException e) {
+            Logger.Warn("Translation Cache " + directory + " Is Unusable (" + e.getMessage() + ")");
+            return null;
+        }
+    }
+
+    // Owned by this user and closed to the group and others
+    private static boolean isPrivate(Path directory) throws IOException {
+        PosixFileAttributes attributes = Files.readAttributes(directory, PosixFileAttributes.class);
+        UserPrincipal user = directory.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+
+        Set<PosixFilePermission> permissions = attributes.permissions();
+        permissions.removeAll(OWNER_ONLY);
+        return attributes.owner().equals(user) && permissions.isEmpty();
+    }
+
+    // MAGIC, the HMAC of the image hash and the class file, then the class file
+    private static byte[] seal(byte[] classFile, String hash, byte[] key) {
+        byte[] entry = new byte[MAGIC.length + MAC_LENGTH + classFile.length];
+        System.arraycopy(MAGIC, 0, entry, 0, MAGIC.length);
+        System.arraycopy(mac(key, hash, classFile), 0, entry, MAGIC.length, MAC_LENGTH);
+        System.arraycopy(classFile, 0, entry, MAGIC.length + MAC_LENGTH, classFile.length);
+        return entry;
+    }
+
+    // The class file of an entry sealed for this image with this key, null if it is not one
+    private static byte[] unseal(byte[] entry, String hash, byte[] key) {
+        if (entry.length <= MAGIC.length + MAC_LENGTH
+                || !Arrays.equals(Arrays.copyOfRange(entry, 0, MAGIC.length), MAGIC))
+            return null;
+
+        byte[] classFile = Arrays.copyOfRange(entry, MAGIC.length + MAC_LENGTH, entry.length);
+        byte[] mac = Arrays.copyOfRange(entry, MAGIC.length, MAGIC.length + MAC_LENGTH);
+
+        return MessageDigest.isEqual(mac, mac(key, hash, classFile)) ? classFile : null;
+    }
+
+    private static byte[] mac(byte[] key, String hash, byte[] classFile) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            mac.update(hash.getBytes(StandardCharsets.US_ASCII));
+            return mac.doFinal(classFile);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    // Writes through a temporary file (private to the user) so other processes never see half an entry
+    private static void store(Path entryPath, byte[] entry) {
+        try {
+            Path temporary = Files.createTempFile(entryPath.getParent(), "translation", ".tmp");
+            Files.write(temporary, entry);
+            Files.move(temporary, entryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Logger.Warn("Translation Could Not Be Cached At " + entryPath + " (" + e.getMessage() + ")");
+        }
+    }
+}
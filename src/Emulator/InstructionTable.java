@@ -0,0 +1,146 @@
+package Emulator;
+
+// Predecoded view of every possible 16 bit instruction word.
+// The table is indexed by the raw word (0x0000 - 0xFFFF) and does not depend on memory contents,
+// so self modifying code (STA, BSA, ISZ) never needs any invalidation.
+final class InstructionTable {
+
+    // Handler ids, kept dense so the dispatch switch compiles to a jump table
+    static final byte AND = 0;
+    static final byte ADD = 1;
+    static final byte LDA = 2;
+    static final byte STA = 3;
+    static final byte BUN = 4;
+    static final byte BSA = 5;
+    static final byte ISZ = 6;
+    static final byte CLA = 7;
+    static final byte CLE = 8;
+    static final byte CMA = 9;
+    static final byte CME = 10;
+    static final byte CIR = 11;
+    static final byte CIL = 12;
+    static final byte INC = 13;
+    static final byte SPA = 14;
+    static final byte SNA = 15;
+    static final byte SZA = 16;
+    static final byte SZE = 17;
+    static final byte HLT = 18;
+    static final byte INP = 19;
+    static final byte OUT = 20;
+    static final byte SKI = 21;
+    static final byte SKO = 22;
+    static final byte ION = 23;
+    static final byte IOF = 24;
+    static final byte INVALID_REGISTER = 25;
+    static final byte INVALID_IO = 26;
+
+    static final int HANDLER_COUNT = 27;
+
+    static final String[] NAMES = { "AND", "ADD", "LDA", "STA", "BUN", "BSA", "ISZ", "CLA", "CLE", "CMA", "CME",
+            "CIR", "CIL", "INC", "SPA", "SNA", "SZA", "SZE", "HLT", "INP", "OUT", "SKI", "SKO", "ION", "IOF",
+            "INVALID_REGISTER", "INVALID_IO" };
+
+    // cycles taken by the interrupt cycle (R = 1)
+    static final int INTERRUPT_CYCLES = 2;
+
+    // most cycles any instruction takes
+    static final int MAX_CYCLES = 6;
+
+    static final byte[] HANDLER = new byte[0x10000]; // handler id for every word
+    static final byte[] CYCLES = new byte[0x10000]; // cycles for every word (T0 -> last T)
+
+    static {
+        for (int word = 0; word < 0x10000; word++) {
+            int oppcode = (word & 0x7000) >> 12;
+            int address = word & 0x0FFF;
+            boolean indirect = (word & 0x8000) != 0;
+
+            byte handler;
+            int cycles = 3; // T0, T1, T2 (fetch and decode)
+
+            if (oppcode != 0x07) { // Memory reference
+                handler = (byte) oppcode;
+                cycles++; // T3 (indirect fetch or idle)
+
+                switch (handler) {
+                    case STA:
+                    case BUN:
+                        cycles += 1;
+                        break;
+
+                    default:
+                        cycles += 2;
+                        break;
+                }
+            } else if (indirect) { // I/O
+                handler = ioHandler(address);
+                if (handler != INVALID_IO)
+                    cycles++;
+            } else { // Register
+                handler = registerHandler(address);
+                if (handler != HLT && handler != INVALID_REGISTER)
+                    cycles++;
+            }
+
+            HANDLER[word] = handler;
+            CYCLES[word] = (byte) cycles;
+        }
+    }
+
+    private InstructionTable() {
+    }
+
+    private static byte ioHandler(int address) {
+        switch (address) {
+            case 0x800:
+                return INP;
+            case 0x400:
+                return OUT;
+            case 0x200:
+                return SKI;
+            case 0x100:
+                return SKO;
+            case 0x080:
+                return ION;
+            case 0x040:
+                return IOF;
+            default:
+                return INVALID_IO;
+        }
+    }
+
+    private static byte registerHandler(int address) {
+        switch (address) {
+            case 0x800:
+                return CLA;
+            case 0x400:
+                return CLE;
+            case 0x200:
+                return CMA;
+            case 0x100:
+                return CME;
+            case 0x080:
+                return CIR;
+            case 0x040:
+                return CIL;
+            case 0x020:
+                return INC;
+            case 0x010:
+                return SPA;
+            case 0x008:
+                return SNA;
+            case 0x004:
+                return SZA;
+            case 0x002:
+                return SZE;
+            case 0x001:
+                return HLT;
+            default:
+                return INVALID_REGISTER;
+        }
+    }
+
+    static boolean isMemoryReference(int handler) {
+        return handler <= ISZ;
+    }
+}
@@ -0,0 +1,788 @@
+package Emulator;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+// Many computers running the same program on different inputs, in lockstep.
+// Every register is a primitive array with one slot per machine and memory is interleaved (word a of machine m
+// at a * machines + m), so machines sharing a PC run each instruction as one loop over all of them. Machines
+// that branch apart are grouped by PC every step and join up again when their PCs meet.
+// I/O matches a MachineFarm job: the input script is ready byte by byte and the output is always ready.
+public final class LockstepEngine {
+
+    private final int machines;
+    private final ProgramImage image;
+    private final short[] memory;
+    private final boolean[] written = new boolean[4096]; // addresses that may differ between machines
+
+    private final int[] ac;
+    private final int[] pc;
+    private final int[] dr;
+    private final int[] ar;
+    private final int[] ir;
+    private final int[] tr;
+    private final int[] outr;
+    private final int[] inpr;
+    private final boolean[] e;
+    private final boolean[] carry;
+    private final boolean[] stopped;
+    private final boolean[] ien;
+    private final boolean[] fgi;
+    private final boolean[] fgo;
+    private final long[] retired;
+    private final long[] cycles;
+    private final long[] budget; // retired count each machine stops at in the current run
+
+    private final byte[][] input;
+    private final int[] inputPosition;
+    private final ByteArrayOutputStream[] output;
+    private final boolean[] inputDue; // INP ran, the next byte lands before the machine's next instruction
+    private final boolean[] outputDue; // OUT ran, FGO comes back before the machine's next instruction
+    private int ioDue = 0; // machines with either of them set
+
+    private final int[] active; // running machines, in machine order
+    private int activeCount = 0;
+    private boolean converged = true; // every running machine is at the same PC
+    private int interruptible = 0; // machines with IEN set
+
+    // While every machine runs the same straight line code, PC, IR, AR and the counters move together and are kept
+    // once here, they are only spread over the arrays (flush) before anything that can tell the machines apart
+    private boolean uniform = false;
+    private int uniformPc;
+    private int uniformIr;
+    private int uniformAr;
+    private long uniformRetired;
+    private long uniformCycles;
+    private long uniformLimit; // instructions until the first machine runs out of budget
+
+    // scratch for grouping machines by PC
+    private final int[] group;
+    private final int[] single = new int[1];
+    private final int[] head = new int[4096];
+    private final int[] next;
+    private final int[] pcs = new int[4096];
+    private final boolean[] interrupted;
+
+    public LockstepEngine(ProgramImage image, int machines) {
+        if (machines < 1)
+            throw new IllegalArgumentException("At least one machine is needed, not " + machines);
+
+        this.machines = machines;
+        this.image = image;
+
+        memory = new short[4096 * machines];
+        for (int address = 0; address < 4096; address++) {
+            short word = image.read(address);
+            if (word != 0)
+                Arrays.fill(memory, address * machines, (address + 1) * machines, word);
+        }
+
+        ac = new int[machines];
+        pc = new int[machines];
+        dr = new int[machines];
+        ar = new int[machines];
+        ir = new int[machines];
+        tr = new int[machines];
+        outr = new int[machines];
+        inpr = new int[machines];
+        e = new boolean[machines];
+        carry = new boolean[machines];
+        stopped = new boolean[machines];
+        ien = new boolean[machines];
+        fgi = new boolean[machines];
+        fgo = new boolean[machines];
+        retired = new long[machines];
+        cycles = new long[machines];
+        budget = new long[machines];
+
+        input = new byte[machines][];
+        inputPosition = new int[machines];
+        output = new ByteArrayOutputStream[machines];
+        inputDue = new boolean[machines];
+        outputDue = new boolean[machines];
+
+        active = new int[machines];
+        group = new int[machines];
+        next = new int[machines];
+        interrupted = new boolean[machines];
+
+        Arrays.fill(fgo, true); // the output device starts out ready
+        Arrays.fill(head, -1);
+
+        for (int machine = 0; machine < machines; machine++) {
+            input[machine] = new byte[0];
+            output[machine] = new ByteArrayOutputStream();
+        }
+    }
+
+    // Input script of one machine, the first byte is in INPR right away
+    public boolean setInput(int machine, byte[] data) {
+        input[machine] = data.clone();
+        inputPosition[machine] = 0;
+        fgi[machine] = false;
+        nextInput(machine);
+        return true;
+    }
+
+    // Changes a word of one machine only, for loading its input vector
+    public boolean write(int machine, int address, short value) {
+        address &= 0x0FFF;
+        memory[address * machines + machine] = value;
+        written[address] = true;
+        return true;
+    }
+
+    // Runs every machine until it stops or retired maxInstructions more, returns the instructions of all machines
+    public long run(long maxInstructions) {
+        long before = 0;
+        activeCount = 0;
+
+        for (int machine = 0; machine < machines; machine++) {
+            before += retired[machine];
+            budget[machine] = retired[machine] + maxInstructions;
+
+            if (!stopped[machine] && maxInstructions > 0)
+                active[activeCount++] = machine;
+
+            if (inputDue[machine] || outputDue[machine])
+                ioDue++; // left over from the end of the last run
+        }
+
+        converged = allAtSamePC();
+
+        while (activeCount > 0)
+            step();
+        flush();
+
+        long after = 0;
+        for (int machine = 0; machine < machines; machine++)
+            after += retired[machine];
+
+        return after - before;
+    }
+
+    // One instruction (or interupt cycle) on every running machine
+    private void step() {
+        if (converged && activeCount == machines && interruptible == 0 && ioDue == 0 && stepUniform())
+            return;
+
+        flush();
+        boolean anyInterrupted = false;
+
+        // Device events of the last step, before the interupt check like the EventScheduler does
+        if (ioDue > 0) {
+            for (int i = 0; i < activeCount; i++) {
+                int m = active[i];
+
+                if (inputDue[m]) {
+                    inputDue[m] = false;
+                    nextInput(m);
+                }
+
+                if (outputDue[m]) {
+                    outputDue[m] = false;
+                    fgo[m] = true;
+                }
+            }
+            ioDue = 0;
+        }
+
+        // Interupt cycles, machines taking one sit out the rest of the step
+        if (interruptible > 0) {
+            for (int i = 0; i < activeCount; i++) {
+                int m = active[i];
+
+                if (ien[m] && (fgi[m] || fgo[m])) {
+                    ar[m] = 0;
+                    tr[m] = pc[m];
+                    memory[m] = (short) tr[m];
+                    written[0] = true;
+                    pc[m] = 1;
+                    ien[m] = false;
+                    interruptible--;
+                    cycles[m] += InstructionTable.INTERRUPT_CYCLES;
+                    interrupted[m] = true;
+                    anyInterrupted = true;
+                }
+            }
+        }
+
+        boolean mayDiverge;
+
+        if (converged && !anyInterrupted) {
+            mayDiverge = execute(active, activeCount, pc[active[0]], activeCount == machines);
+        } else {
+            mayDiverge = true;
+
+            // Group the machines by PC: a linked list per PC through next[]
+            int pcCount = 0;
+            for (int i = activeCount - 1; i >= 0; i--) {
+                int m = active[i];
+                if (interrupted[m])
+                    continue;
+
+                int address = pc[m];
+                if (head[address] < 0)
+                    pcs[pcCount++] = address;
+
+                next[m] = head[address];
+                head[address] = m;
+            }
+
+            for (int p = 0; p < pcCount; p++) {
+                int address = pcs[p];
+                int count = 0;
+
+                for (int m = head[address]; m >= 0; m = next[m])
+                    group[count++] = m;
+                head[address] = -1;
+
+                execute(group, count, address, false);
+            }
+        }
+
+        dropFinished();
+
+        if (mayDiverge || anyInterrupted)
+            converged = allAtSamePC();
+    }
+
+    // Straight line code (or a direct BUN) on every machine at once, false if the instruction needs step()
+    private boolean stepUniform() {
+        int address = uniform ? uniformPc : pc[0];
+        if (written[address])
+            return false;
+
+        int word = image.read(address) & 0xFFFF;
+        int handler = InstructionTable.HANDLER[word];
+        if (word >= 0x8000 && InstructionTable.isMemoryReference(handler))
+            return false;
+
+        int skips = 0; // machines an ISZ skipped on
+
+        switch (handler) {
+            case InstructionTable.AND:
+            case InstructionTable.ADD:
+            case InstructionTable.LDA:
+            case InstructionTable.STA:
+            case InstructionTable.CLA:
+            case InstructionTable.CLE:
+            case InstructionTable.CMA:
+            case InstructionTable.CME:
+            case InstructionTable.CIR:
+            case InstructionTable.CIL:
+            case InstructionTable.INC:
+                operate(active, machines, address, word, true);
+                uniformPc = (address + 1) & 0x0FFF;
+                break;
+
+            case InstructionTable.BUN:
+                uniformPc = word & 0x0FFF;
+                break;
+
+            case InstructionTable.ISZ: { // loop counters usually run out on every machine at the same time
+                final int base = (word & 0x0FFF) * machines;
+                for (int m = 0; m < machines; m++) {
+                    dr[m] = (short) (memory[base + m] + 1);
+                    memory[base + m] = (short) dr[m];
+                    if (dr[m] == 0)
+                        skips++;
+                }
+                written[word & 0x0FFF] = true;
+                uniformPc = (address + (skips == machines ? 2 : 1)) & 0x0FFF;
+                break;
+            }
+
+            default:
+                return false;
+        }
+
+        if (!uniform) {
+            uniform = true;
+            uniformRetired = 0;
+            uniformCycles = 0;
+            uniformLimit = Long.MAX_VALUE;
+            for (int m = 0; m < machines; m++)
+                uniformLimit = Math.min(uniformLimit, budget[m] - retired[m]);
+        }
+
+        uniformIr = word;
+        uniformAr = word & 0x0FFF;
+        uniformRetired++;
+        uniformCycles += InstructionTable.CYCLES[word];
+
+        if (skips > 0 && skips < machines) { // the machines part here
+            flush();
+            for (int m = 0; m < machines; m++)
+                if (dr[m] == 0)
+                    pc[m] = (address + 2) & 0x0FFF;
+            converged = false;
+        }
+
+        if (uniformRetired >= uniformLimit) {
+            flush();
+            dropFinished();
+        }
+        return true;
+    }
+
+    private void flush() {
+        if (!uniform)
+            return;
+        uniform = false;
+
+        Arrays.fill(pc, uniformPc);
+        Arrays.fill(ir, uniformIr);
+        Arrays.fill(ar, uniformAr);
+        for (int m = 0; m < machines; m++) {
+            retired[m] += uniformRetired;
+            cycles[m] += uniformCycles;
+        }
+    }
+
+    // Drops the machines that stopped or used up their budget
+    private void dropFinished() {
+        int kept = 0;
+        for (int i = 0; i < activeCount; i++) {
+            int m = active[i];
+            interrupted[m] = false;
+
+            if (!stopped[m] && retired[m] < budget[m])
+                active[kept++] = m;
+        }
+        activeCount = kept;
+    }
+
+    private boolean allAtSamePC() {
+        if (activeCount == 0)
+            return true;
+
+        int first = pc[active[0]];
+        for (int i = 1; i < activeCount; i++)
+            if (pc[active[i]] != first)
+                return false;
+
+        return true;
+    }
+
+    // Runs the instruction at address on a group of machines, returns true if their PCs may now differ.
+    // dense means the group is every machine in order, so the loops run straight over the arrays
+    private boolean execute(int[] lanes, int count, int address, boolean dense) {
+        int word = image.read(address) & 0xFFFF;
+
+        if (written[address]) {
+            int base = address * machines;
+            word = memory[base + lanes[0]] & 0xFFFF;
+
+            for (int i = 1; i < count; i++) {
+                if ((memory[base + lanes[i]] & 0xFFFF) != word) {
+                    // self modifying code made the machines differ here, one machine at a time
+                    for (int j = 0; j < count; j++) {
+                        single[0] = lanes[j];
+                        executeWord(single, 1, address, memory[base + lanes[j]] & 0xFFFF, false);
+                    }
+                    return true;
+                }
+            }
+        }
+
+        return executeWord(lanes, count, address, word, dense);
+    }
+
+    private boolean executeWord(int[] lanes, int count, int address, int word, boolean dense) {
+        final int handler = InstructionTable.HANDLER[word];
+        final int cost = InstructionTable.CYCLES[word];
+        final int following = (address + 1) & 0x0FFF;
+        final int target = word & 0x0FFF;
+        final boolean indirect = word >= 0x8000 && InstructionTable.isMemoryReference(handler);
+        final int n = machines;
+
+        // Bookkeeping every instruction shares
+        if (dense) {
+            for (int m = 0; m < n; m++) {
+                ir[m] = word;
+                ar[m] = target;
+                pc[m] = following;
+                cycles[m] += cost;
+                retired[m]++;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                int m = lanes[i];
+                ir[m] = word;
+                ar[m] = target;
+                pc[m] = following;
+                cycles[m] += cost;
+                retired[m]++;
+            }
+        }
+
+        // Indirect fetch at T3, the only place machines can get different addresses
+        if (indirect) {
+            for (int i = 0; i < count; i++) {
+                int m = lanes[i];
+                ar[m] = memory[target * n + m] & 0x0FFF;
+            }
+        }
+
+        return operate(lanes, count, address, word, dense && !indirect);
+    }
+
+    // The part of the instruction after T3, bookkeeping (IR, AR, PC, counters) is already done
+    private boolean operate(int[] lanes, int count, int address, int word, boolean dense) {
+        final int handler = InstructionTable.HANDLER[word];
+        final int following = (address + 1) & 0x0FFF;
+        final int target = word & 0x0FFF;
+        final boolean indirect = word >= 0x8000 && InstructionTable.isMemoryReference(handler);
+        final int n = machines;
+        final int base = target * n; // operand of direct memory reference instructions
+
+        switch (handler) {
+            case InstructionTable.AND:
+                if (dense) {
+                    for (int m = 0; m < n; m++) {
+                        dr[m] = memory[base + m];
+                        ac[m] &= dr[m] & 0xFFFF;
+                    }
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        int m = lanes[i];
+                        dr[m] = memory[ar[m] * n + m];
+                        ac[m] &= dr[m] & 0xFFFF;
+                    }
+                }
+                return false;
+
+            case InstructionTable.ADD:
+                if (dense) {
+                    for (int m = 0; m < n; m++) {
+                        dr[m] = memory[base + m];
+                        int sum = ac[m] + (dr[m] & 0xFFFF);
+                        carry[m] = sum > 0xFFFF;
+                        e[m] = sum > 0xFFFF;
+                        ac[m] = sum & 0xFFFF;
+                    }
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        int m = lanes[i];
+                        dr[m] = memory[ar[m] * n + m];
+                        int sum = ac[m] + (dr[m] & 0xFFFF);
+                        carry[m] = sum > 0xFFFF;
+                        e[m] = sum > 0xFFFF;
+                        ac[m] = sum & 0xFFFF;
+                    }
+                }
+                return false;
+
+            case InstructionTable.LDA:
+                if (dense) {
+                    for (int m = 0; m < n; m++) {
+                        dr[m] = memory[base + m];
+                        ac[m] = dr[m] & 0xFFFF;
+                    }
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        int m = lanes[i];
+                        dr[m] = memory[ar[m] * n + m];
+                        ac[m] = dr[m] & 0xFFFF;
+                    }
+                }
+                return false;
+
+            case InstructionTable.STA:
+                if (dense) {
+                    for (int m = 0; m < n; m++)
+                        memory[base + m] = (short) ac[m];
+                    written[target] = true;
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        int m = lanes[i];
+                        memory[ar[m] * n + m] = (short) ac[m];
+                        written[ar[m]] = true;
+                    }
+                }
+                return false;
+
+            case InstructionTable.BUN:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    pc[m] = ar[m];
+                }
+                return indirect;
+
+            case InstructionTable.BSA:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    memory[ar[m] * n + m] = (short) following;
+                    written[ar[m]] = true;
+                    ar[m] = (ar[m] + 1) & 0x0FFF;
+                    pc[m] = ar[m];
+                }
+                return indirect;
+
+            case InstructionTable.ISZ:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    int slot = ar[m] * n + m;
+                    dr[m] = (short) (memory[slot] + 1);
+                    memory[slot] = (short) dr[m];
+                    written[ar[m]] = true;
+                    if (dr[m] == 0)
+                        pc[m] = (following + 1) & 0x0FFF;
+                }
+                return true;
+
+            case InstructionTable.CLA:
+                if (dense)
+                    Arrays.fill(ac, 0);
+                else
+                    for (int i = 0; i < count; i++)
+                        ac[lanes[i]] = 0;
+                return false;
+
+            case InstructionTable.CLE:
+                for (int i = 0; i < count; i++)
+                    e[lanes[i]] = false;
+                return false;
+
+            case InstructionTable.CMA:
+                if (dense) {
+                    for (int m = 0; m < n; m++)
+                        ac[m] = ~ac[m] & 0xFFFF;
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        int m = lanes[i];
+                        ac[m] = ~ac[m] & 0xFFFF;
+                    }
+                }
+                return false;
+
+            case InstructionTable.CME:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    e[m] = !e[m];
+                }
+                return false;
+
+            case InstructionTable.CIR:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    boolean lowBit = (ac[m] & 0x01) != 0;
+                    ac[m] = (ac[m] >> 1) | (e[m] ? 0x8000 : 0);
+                    e[m] = lowBit;
+                }
+                return false;
+
+            case InstructionTable.CIL:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    boolean highBit = (ac[m] & 0x8000) != 0;
+                    ac[m] = ((ac[m] << 1) | (e[m] ? 1 : 0)) & 0xFFFF;
+                    e[m] = highBit;
+                }
+                return false;
+
+            case InstructionTable.INC:
+                if (dense) {
+                    for (int m = 0; m < n; m++) {
+                        int sum = ac[m] + 1;
+                        carry[m] = sum > 0xFFFF;
+                        e[m] = sum > 0xFFFF;
+                        ac[m] = sum & 0xFFFF;
+                    }
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        int m = lanes[i];
+                        int sum = ac[m] + 1;
+                        carry[m] = sum > 0xFFFF;
+                        e[m] = sum > 0xFFFF;
+                        ac[m] = sum & 0xFFFF;
+                    }
+                }
+                return false;
+
+            case InstructionTable.SPA:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    if ((ac[m] & 0x8000) == 0)
+                        pc[m] = (following + 1) & 0x0FFF;
+                }
+                return true;
+
+            case InstructionTable.SNA:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    if ((ac[m] & 0x8000) != 0)
+                        pc[m] = (following + 1) & 0x0FFF;
+                }
+                return true;
+
+            case InstructionTable.SZA:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    if (ac[m] == 0)
+                        pc[m] = (following + 1) & 0x0FFF;
+                }
+                return true;
+
+            case InstructionTable.SZE:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    if (!e[m])
+                        pc[m] = (following + 1) & 0x0FFF;
+                }
+                return true;
+
+            case InstructionTable.HLT:
+                for (int i = 0; i < count; i++)
+                    stopped[lanes[i]] = true;
+                return false;
+
+            case InstructionTable.INP:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    ac[m] = (ac[m] & 0xFF00) | inpr[m];
+                    fgi[m] = false;
+                    if (!inputDue[m] && !outputDue[m])
+                        ioDue++;
+                    inputDue[m] = true;
+                }
+                return false;
+
+            case InstructionTable.OUT:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    outr[m] = ac[m];
+                    output[m].write(ac[m]);
+                    fgo[m] = false;
+                    if (!inputDue[m] && !outputDue[m])
+                        ioDue++;
+                    outputDue[m] = true;
+                }
+                return false;
+
+            case InstructionTable.SKI:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    if (fgi[m])
+                        pc[m] = (following + 1) & 0x0FFF;
+                    else
+                        idle(m, following, address);
+                }
+                return true;
+
+            case InstructionTable.SKO:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    if (fgo[m])
+                        pc[m] = (following + 1) & 0x0FFF;
+                    else
+                        idle(m, following, address);
+                }
+                return true;
+
+            case InstructionTable.ION:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    if (!ien[m]) {
+                        ien[m] = true;
+                        interruptible++;
+                    }
+                }
+                return false;
+
+            case InstructionTable.IOF:
+                for (int i = 0; i < count; i++) {
+                    int m = lanes[i];
+                    if (ien[m]) {
+                        ien[m] = false;
+                        interruptible--;
+                    }
+                }
+                return false;
+
+            case InstructionTable.INVALID_IO:
+                return false;
+
+            default: // InstructionTable.INVALID_REGISTER
+                for (int i = 0; i < count; i++)
+                    stopped[lanes[i]] = true;
+                return false;
+        }
+    }
+
+    // A failed skip followed by BUN back to it with no interupt possible never ends (no event can come),
+    // so the machine spins out its budget at once, with the same counts as BasicComputer
+    private void idle(int m, int following, int address) {
+        if (ien[m] && (fgi[m] || fgo[m]))
+            return;
+        if ((memory[following * machines + m] & 0xFFFF) != (0x4000 | address))
+            return;
+
+        long spins = (budget[m] - retired[m]) / 2;
+        retired[m] += spins * 2;
+        cycles[m] += spins * (InstructionTable.CYCLES[0x4000] + InstructionTable.CYCLES[0xF200]);
+    }
+
+    // Loads the next byte of the machine's script into INPR
+    private void nextInput(int m) {
+        if (inputPosition[m] < input[m].length) {
+            inpr[m] = input[m][inputPosition[m]++] & 0xFF;
+            fgi[m] = true;
+        }
+    }
+
+    public int getMachineCount() {
+        return machines;
+    }
+
+    public short getRegister(int machine, Register register) {
+        switch (register) {
+            case AR:
+                return (short) ar[machine];
+            case PC:
+                return (short) pc[machine];
+            case DR:
+                return (short) dr[machine];
+            case AC:
+                return (short) ac[machine];
+            case IR:
+                return (short) ir[machine];
+            case TR:
+                return (short) tr[machine];
+            case OUTR:
+                return (short) (outr[machine] & 0xFF);
+            case INPR:
+                return (short) inpr[machine];
+            default: // SC
+                return 0;
+        }
+    }
+
+    // Same packing as BasicComputer.getFlags
+    public byte getFlags(int machine) {
+        return (byte) ((stopped[machine] ? 0b1 : 0) | (ien[machine] ? 0b10 : 0) | (fgi[machine] ? 0b100 : 0)
+                | (fgo[machine] ? 0b1000 : 0) | (e[machine] ? 0b10000 : 0) | (carry[machine] ? 0b100000 : 0)
+                | (ir[machine] >= 0x8000 ? 0b1000000 : 0));
+    }
+
+    public boolean isStopped(int machine) {
+        return stopped[machine];
+    }
+
+    public short getMemory(int machine, int address) {
+        return memory[(address & 0x0FFF) * machines + machine];
+    }
+
+    public byte[] getOutput(int machine) {
+        return output[machine].toByteArray();
+    }
+
+    public long getInstructionsRetired(int machine) {
+        return retired[machine];
+    }
+
+    public long getCyclesElapsed(int machine) {
+        return cycles[machine];
+    }
+}
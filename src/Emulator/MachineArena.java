@@ -0,0 +1,457 @@
+package Emulator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Fixed size pool of machines kept off the Java heap.
+// Every machine is one record of STRIDE bytes in a direct buffer (register block, then the 4096 words) and is
+// named by an int handle, so the heap holds a few arrays no matter how many machines are resident and the
+// garbage collector never sees their memory. run() is a flyweight interpreter working on the record in place,
+// with the semantics of BasicComputer.run (no listener, translation or devices).
+public final class MachineArena {
+
+    // Register block layout (native byte order)
+    static final int AC = 0; // short
+    static final int PC = 2; // short
+    static final int DR = 4; // short
+    static final int AR = 6; // short
+    static final int IR = 8; // short
+    static final int TR = 10; // short
+    static final int OUTR = 12; // byte
+    static final int INPR = 13; // byte
+    static final int FLAGS = 14; // byte, packed like BasicComputer.getFlags
+    static final int CYCLES = 15; // byte, cycles of the last instruction
+    static final int RETIRED = 16; // long
+    static final int ELAPSED = 24; // long
+    static final int MEMORY = 64; // 4096 shorts
+
+    public static final int STRIDE = MEMORY + 4096 * 2;
+
+    private static final int MACHINES_PER_CHUNK = Integer.MAX_VALUE / STRIDE; // one direct buffer holds < 2 GB
+
+    private final int capacity;
+    private final AtomicReferenceArray<ByteBuffer> chunks; // allocated on first use
+    private final int[] free; // stack of free handles
+    private int freeCount;
+
+    public MachineArena(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Arena capacity must be at least 1, not " + capacity);
+
+        this.capacity = capacity;
+        this.chunks = new AtomicReferenceArray<ByteBuffer>(
+                (capacity + MACHINES_PER_CHUNK - 1) / MACHINES_PER_CHUNK);
+        this.free = new int[capacity];
+
+        for (int i = 0; i < capacity; i++)
+            free[i] = capacity - 1 - i; // handle 0 comes out first
+        freeCount = capacity;
+    }
+
+    // A machine at the start of the image, -1 if the arena is full
+    public synchronized int allocate(ProgramImage image) {
+        if (freeCount == 0)
+            return -1;
+
+        int machine = free[--freeCount];
+        load(machine, image);
+        return machine;
+    }
+
+    public synchronized boolean release(int machine) {
+        free[freeCount++] = machine;
+        return true;
+    }
+
+    // Clears the register block and copies the image into the machine's memory
+    public boolean load(int machine, ProgramImage image) {
+        ByteBuffer chunk = chunk(machine);
+        int base = base(machine);
+
+        for (int i = 0; i < MEMORY; i += 8)
+            chunk.putLong(base + i, 0);
+
+        ByteBuffer view = chunk.duplicate().order(chunk.order()); // own position, the chunk is shared
+        view.position(base + MEMORY);
+        ShortBuffer words = view.asShortBuffer();
+        for (short[] page : image.pages)
+            words.put(page);
+
+        return true;
+    }
+
+    // Runs at most maxInstructions instructions, returns the number of instructions retired
+    public long run(int machine, long maxInstructions) {
+        return execute(chunk(machine), base(machine), maxInstructions);
+    }
+
+    // The flyweight interpreter, on the record at base of any buffer (arena chunk or mapped file)
+    static long execute(ByteBuffer chunk, int base, long maxInstructions) {
+        final int memory = base + MEMORY;
+
+        int flags = chunk.get(base + FLAGS);
+        boolean stopped = (flags & 0b1) != 0;
+        if (stopped || maxInstructions <= 0)
+            return 0;
+
+        boolean ien = (flags & 0b10) != 0;
+        boolean fgi = (flags & 0b100) != 0;
+        boolean fgo = (flags & 0b1000) != 0;
+        boolean e = (flags & 0b10000) != 0;
+        boolean carry = (flags & 0b100000) != 0;
+
+        int ac = chunk.getShort(base + AC) & 0xFFFF;
+        int pc = chunk.getShort(base + PC) & 0x0FFF;
+        int dr = chunk.getShort(base + DR);
+        int ar = chunk.getShort(base + AR) & 0x0FFF;
+        int ir = chunk.getShort(base + IR) & 0xFFFF;
+        int tr = chunk.getShort(base + TR);
+        int outr = chunk.get(base + OUTR);
+        final int inpr = chunk.get(base + INPR) & 0xFF;
+        final long elapsed = chunk.getLong(base + ELAPSED);
+
+        long retired = 0;
+        long cycleCount = 0;
+        int lastCycles = chunk.get(base + CYCLES);
+
+        while (!stopped && retired < maxInstructions) {
+
+            // Interupt cycle, only taken between instructions
+            if (ien && (fgi || fgo)) {
+                ar = 0;
+                tr = pc;
+                chunk.putShort(memory, (short) tr);
+                pc = 1;
+                ien = false;
+
+                lastCycles = InstructionTable.INTERRUPT_CYCLES;
+                cycleCount += lastCycles;
+                continue;
+            }
+
+            ar = pc;
+            ir = chunk.getShort(memory + (ar << 1)) & 0xFFFF;
+            pc = (pc + 1) & 0x0FFF;
+
+            final int handler = InstructionTable.HANDLER[ir];
+            ar = ir & 0x0FFF;
+
+            if (ir >= 0x8000 && handler <= InstructionTable.ISZ)
+                ar = chunk.getShort(memory + (ar << 1)) & 0x0FFF;
+
+            switch (handler) {
+                case InstructionTable.AND:
+                    dr = chunk.getShort(memory + (ar << 1));
+                    ac &= dr & 0xFFFF;
+                    break;
+
+                case InstructionTable.ADD:
+                    dr = chunk.getShort(memory + (ar << 1));
+                    ac += dr & 0xFFFF;
+                    carry = ac > 0xFFFF;
+                    e = carry;
+                    ac &= 0xFFFF;
+                    break;
+
+                case InstructionTable.LDA:
+                    dr = chunk.getShort(memory + (ar << 1));
+                    ac = dr & 0xFFFF;
+                    break;
+
+                case InstructionTable.STA:
+                    chunk.putShort(memory + (ar << 1), (short) ac);
+                    break;
+
+                case InstructionTable.BUN:
+                    pc = ar;
+                    break;
+
+                case InstructionTable.BSA:
+                    chunk.putShort(memory + (ar << 1), (short) pc);
+                    ar = (ar + 1) & 0x0FFF;
+                    pc = ar;
+                    break;
+
+                case InstructionTable.ISZ:
+                    dr = (short) (chunk.getShort(memory + (ar << 1)) + 1);
+                    chunk.putShort(memory + (ar << 1), (short) dr);
+                    if (dr == 0)
+                        pc = (pc + 1) & 0x0FFF;
+                    break;
+
+                case InstructionTable.CLA:
+                    ac = 0x00;
+                    break;
+
+                case InstructionTable.CLE:
+                    e = false;
+                    break;
+
+                case InstructionTable.CMA:
+                    ac = ~ac & 0xFFFF;
+                    break;
+
+                case InstructionTable.CME:
+                    e = !e;
+                    break;
+
+                case InstructionTable.CIR: {
+                    boolean lowBit = (ac & 0x01) != 0;
+                    ac = (ac >> 1) | (e ? 0x8000 : 0);
+                    e = lowBit;
+                    break;
+                }
+
+                case InstructionTable.CIL: {
+                    boolean highBit = (ac & 0x8000) != 0;
+                    ac = ((ac << 1) | (e ? 1 : 0)) & 0xFFFF;
+                    e = highBit;
+                    break;
+                }
+
+                case InstructionTable.INC:
+                    ac++;
+                    carry = ac > 0xFFFF;
+                    e = carry;
+                    ac &= 0xFFFF;
+                    break;
+
+                case InstructionTable.SPA:
+                    if ((ac & 0x8000) == 0)
+                        pc = (pc + 1) & 0x0FFF;
+                    break;
+
+                case InstructionTable.SNA:
+                    if ((ac & 0x8000) != 0)
+                        pc = (pc + 1) & 0x0FFF;
+                    break;
+
+                case InstructionTable.SZA:
+                    if (ac == 0)
+                        pc = (pc + 1) & 0x0FFF;
+                    break;
+
+                case InstructionTable.SZE:
+                    if (!e)
+                        pc = (pc + 1) & 0x0FFF;
+                    break;
+
+                case InstructionTable.HLT:
+                    stopped = true;
+                    break;
+
+                case InstructionTable.INP:
+                    ac = (ac & 0xFF00) | inpr;
+                    fgi = false;
+                    break;
+
+                case InstructionTable.OUT:
+                    outr = ac;
+                    fgo = false;
+                    break;
+
+                case InstructionTable.SKI:
+                case InstructionTable.SKO:
+                    if (handler == InstructionTable.SKI ? fgi : fgo) {
+                        pc = (pc + 1) & 0x0FFF;
+                    } else if (!(ien && (fgi || fgo))
+                            && chunk.getShort(memory + (pc << 1)) == (short) (0x4000 | ((pc - 1) & 0x0FFF))) {
+                        // polling loop, nothing in the arena can set the flag so it spins out the budget
+                        long spins = Math.min((maxInstructions - retired - 1) / 2,
+                                (Long.MAX_VALUE - elapsed - cycleCount) / 9);
+                        cycleCount += spins * 9;
+                        retired += spins * 2;
+                    }
+                    break;
+
+                case InstructionTable.ION:
+                    ien = true;
+                    break;
+
+                case InstructionTable.IOF:
+                    ien = false;
+                    break;
+
+                case InstructionTable.INVALID_IO:
+                    break;
+
+                default: // InstructionTable.INVALID_REGISTER
+                    stopped = true;
+                    break;
+            }
+
+            lastCycles = InstructionTable.CYCLES[ir];
+            cycleCount += lastCycles;
+            retired++;
+        }
+
+        chunk.putShort(base + AC, (short) ac);
+        chunk.putShort(base + PC, (short) pc);
+        chunk.putShort(base + DR, (short) dr);
+        chunk.putShort(base + AR, (short) ar);
+        chunk.putShort(base + IR, (short) ir);
+        chunk.putShort(base + TR, (short) tr);
+        chunk.put(base + OUTR, (byte) outr);
+        chunk.put(base + CYCLES, (byte) lastCycles);
+        chunk.put(base + FLAGS, (byte) ((stopped ? 0b1 : 0) | (ien ? 0b10 : 0) | (fgi ? 0b100 : 0)
+                | (fgo ? 0b1000 : 0) | (e ? 0b10000 : 0) | (carry ? 0b100000 : 0) | (ir >= 0x8000 ? 0b1000000 : 0)));
+        chunk.putLong(base + RETIRED, chunk.getLong(base + RETIRED) + retired);
+        chunk.putLong(base + ELAPSED, elapsed + cycleCount);
+
+        return retired;
+    }
+
+    public short getRegister(int machine, Register register) {
+        return register(chunk(machine), base(machine), register);
+    }
+
+    static short register(ByteBuffer chunk, int base, Register register) {
+        switch (register) {
+            case AR:
+                return chunk.getShort(base + AR);
+            case PC:
+                return chunk.getShort(base + PC);
+            case DR:
+                return chunk.getShort(base + DR);
+            case AC:
+                return chunk.getShort(base + AC);
+            case IR:
+                return chunk.getShort(base + IR);
+            case TR:
+                return chunk.getShort(base + TR);
+            case OUTR:
+                return (short) (chunk.get(base + OUTR) & 0xFF);
+            case INPR:
+                return (short) (chunk.get(base + INPR) & 0xFF);
+            default: // SC
+                return 0;
+        }
+    }
+
+    public byte getFlags(int machine) {
+        return chunk(machine).get(base(machine) + FLAGS);
+    }
+
+    public boolean isStopped(int machine) {
+        return (getFlags(machine) & 0b1) != 0;
+    }
+
+    public boolean setINPR(int machine, byte value) {
+        chunk(machine).put(base(machine) + INPR, value);
+        return true;
+    }
+
+    public boolean setFGI(int machine, int value) {
+        return setFlag(chunk(machine), base(machine), 0b100, value != 0);
+    }
+
+    public boolean setFGO(int machine, int value) {
+        return setFlag(chunk(machine), base(machine), 0b1000, value != 0);
+    }
+
+    static boolean setFlag(ByteBuffer chunk, int base, int bit, boolean set) {
+        int flags = chunk.get(base + FLAGS);
+
+        chunk.put(base + FLAGS, (byte) (set ? flags | bit : flags & ~bit));
+        return true;
+    }
+
+    public short getMemory(int machine, int address) {
+        return chunk(machine).getShort(base(machine) + MEMORY + ((address & 0x0FFF) << 1));
+    }
+
+    public boolean setMemory(int machine, int address, short value) {
+        chunk(machine).putShort(base(machine) + MEMORY + ((address & 0x0FFF) << 1), value);
+        return true;
+    }
+
+    public long getInstructionsRetired(int machine) {
+        return chunk(machine).getLong(base(machine) + RETIRED);
+    }
+
+    public long getCyclesElapsed(int machine) {
+        return chunk(machine).getLong(base(machine) + ELAPSED);
+    }
+
+    // Copies the record into the snapshot, in pages of its own
+    static Snapshot read(ByteBuffer chunk, int base, Snapshot snapshot) {
+        snapshot.AC = chunk.getShort(base + AC) & 0xFFFF;
+        snapshot.PC = chunk.getShort(base + PC);
+        snapshot.DR = chunk.getShort(base + DR);
+        snapshot.AR = chunk.getShort(base + AR);
+        snapshot.IR = chunk.getShort(base + IR);
+        snapshot.TR = chunk.getShort(base + TR);
+        snapshot.SC = 0;
+        snapshot.OUTR = chunk.get(base + OUTR);
+        snapshot.INPR = chunk.get(base + INPR);
+        snapshot.flags = chunk.get(base + FLAGS);
+        snapshot.cycles = chunk.get(base + CYCLES);
+        snapshot.instructionsRetired = chunk.getLong(base + RETIRED);
+        snapshot.cyclesElapsed = chunk.getLong(base + ELAPSED);
+
+        for (int page = 0; page < PagedMemory.PAGE_COUNT; page++) {
+            short[] words = new short[PagedMemory.PAGE_SIZE];
+            for (int i = 0; i < PagedMemory.PAGE_SIZE; i++)
+                words[i] = chunk.getShort(base + MEMORY + (((page << PagedMemory.PAGE_SHIFT) + i) << 1));
+            snapshot.pages[page] = words;
+        }
+
+        return snapshot;
+    }
+
+    static void write(ByteBuffer chunk, int base, Snapshot snapshot) {
+        chunk.putShort(base + AC, (short) snapshot.AC);
+        chunk.putShort(base + PC, snapshot.PC);
+        chunk.putShort(base + DR, snapshot.DR);
+        chunk.putShort(base + AR, snapshot.AR);
+        chunk.putShort(base + IR, snapshot.IR);
+        chunk.putShort(base + TR, snapshot.TR);
+        chunk.put(base + OUTR, snapshot.OUTR);
+        chunk.put(base + INPR, snapshot.INPR);
+        chunk.put(base + FLAGS, snapshot.flags);
+        chunk.put(base + CYCLES, snapshot.cycles);
+        chunk.putLong(base + RETIRED, snapshot.instructionsRetired);
+        chunk.putLong(base + ELAPSED, snapshot.cyclesElapsed);
+
+        for (int page = 0; page < PagedMemory.PAGE_COUNT; page++)
+            for (int i = 0; i < PagedMemory.PAGE_SIZE; i++)
+                chunk.putShort(base + MEMORY + (((page << PagedMemory.PAGE_SHIFT) + i) << 1),
+                        snapshot.pages[page][i]);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int getResidentCount() {
+        return capacity - freeCount;
+    }
+
+    private ByteBuffer chunk(int machine) {
+        if (machine < 0 || machine >= capacity)
+            throw new IndexOutOfBoundsException("No machine " + machine + " in an arena of " + capacity);
+
+        int index = machine / MACHINES_PER_CHUNK;
+        ByteBuffer chunk = chunks.get(index);
+
+        if (chunk == null)
+            chunk = allocateChunk(index);
+
+        return chunk;
+    }
+
+    private synchronized ByteBuffer allocateChunk(int index) {
+        if (chunks.get(index) == null) {
+            int count = Math.min(MACHINES_PER_CHUNK, capacity - index * MACHINES_PER_CHUNK);
+            chunks.set(index, ByteBuffer.allocateDirect(count * STRIDE).order(ByteOrder.nativeOrder()));
+        }
+
+        return chunks.get(index);
+    }
+
+    private static int base(int machine) {
+        return (machine % MACHINES_PER_CHUNK) * STRIDE;
+    }
+}
@@ -0,0 +1,138 @@
+package Emulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+
+import Debugger.Logger;
+
+// Runs many independent computers at once on a work stealing pool.
+// Every job gets its own BasicComputer (sharing the unwritten pages of the job's image) and no listener, and
+// the worker threads are silenced in the Logger, so jobs never share state or serialize on System.out.
+// Computers are recycled through a ComputerPool per ProgramImage, so jobs should share their image.
+public final class MachineFarm {
+
+    static final int MAX_POOLS = 1024; // images with a pool, jobs on other images get fresh computers
+
+    private final ForkJoinPool pool;
+    private final ConcurrentHashMap<ProgramImage, ComputerPool> computers;
+
+    private final LongAdder jobsCompleted = new LongAdder();
+    private final LongAdder instructionsRetired = new LongAdder();
+    private final LongAdder cyclesElapsed = new LongAdder();
+    private final long createdAt = System.nanoTime();
+
+    public MachineFarm() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public MachineFarm(int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+        computers = new ConcurrentHashMap<ProgramImage, ComputerPool>();
+
+        try {
+            Metrics.registerProcess();
+        } catch (JMException e) {
+            Logger.Warn("Process Metrics Not Registered: " + e.getMessage());
+        }
+    }
+
+    public CompletableFuture<FarmResult> submit(FarmJob job) {
+        return CompletableFuture.supplyAsync(() -> {
+            ComputerPool computerPool = computers.get(job.image);
+            if (computerPool == null && computers.size() < MAX_POOLS)
+                computerPool = computers.computeIfAbsent(job.image, ComputerPool::new);
+
+            FarmResult result;
+            if (computerPool != null) {
+                BasicComputer computer = computerPool.checkout();
+                result = runJob(job, computer);
+                computerPool.release(computer);
+            } else {
+                result = runJob(job);
+            }
+
+            jobsCompleted.increment();
+            instructionsRetired.add(result.getInstructionsRetired());
+            cyclesElapsed.add(result.getCyclesElapsed());
+            return result;
+        }, pool);
+    }
+
+    // Submits every job and waits for all of them, results are in the order of the jobs
+    public List<FarmResult> runAll(List<FarmJob> jobs) {
+        List<CompletableFuture<FarmResult>> futures = new ArrayList<CompletableFuture<FarmResult>>(jobs.size());
+        for (FarmJob job : jobs)
+            futures.add(submit(job));
+
+        List<FarmResult> results = new ArrayList<FarmResult>(jobs.size());
+        for (CompletableFuture<FarmResult> future : futures)
+            results.add(future.join());
+
+        return results;
+    }
+
+    // Runs a job on the calling thread, in the same isolated mode the farm uses
+    public static FarmResult runJob(FarmJob job) {
+        return runJob(job, new BasicComputer(job.image));
+    }
+
+    // The computer must be at the start of the job's image
+    private static FarmResult runJob(FarmJob job, BasicComputer computer) {
+        boolean wasSilenced = Logger.isThreadSilenced();
+        Logger.silenceThread(true);
+
+        try {
+            long start = System.nanoTime();
+
+            // devices answer right away, the guest only waits on its own SKI / SKO loops
+            TimedInputDevice input = new TimedInputDevice(job.input, 0);
+            TimedOutputDevice output = new TimedOutputDevice(0);
+            computer.setInputDevice(input);
+            computer.setOutputDevice(output);
+
+            computer.run(job.maxInstructions);
+
+            // the snapshot shares the pages, so the computer can go back to its pool right away
+            FarmResult result = new FarmResult(computer.snapshot(), output.getOutput(), System.nanoTime() - start);
+            computer.detachDevices();
+            return result;
+        } finally {
+            Logger.silenceThread(wasSilenced);
+        }
+    }
+
+    public long getJobsCompleted() {
+        return jobsCompleted.sum();
+    }
+
+    public long getInstructionsRetired() {
+        return instructionsRetired.sum();
+    }
+
+    public long getCyclesElapsed() {
+        return cyclesElapsed.sum();
+    }
+
+    // Guest instructions per second over all workers since the farm was created
+    public double getThroughput() {
+        double seconds = (System.nanoTime() - createdAt) / 1e9;
+        return seconds > 0 ? instructionsRetired.sum() / seconds : 0;
+    }
+
+    public boolean shutdown() {
+        pool.shutdown();
+        try {
+            return pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
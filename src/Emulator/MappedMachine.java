@@ -0,0 +1,193 @@
+package Emulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import Debugger.Logger;
+import Exceptions.FileNotParsed;
+
+// A machine living in a memory mapped file (Compiler.FileFormat.IMAGE).
+// run() works on the mapped record in place, so every instruction is already in the file: there is no save
+// step and opening the file again (even from another JVM) carries on where the machine stopped.
+// The operating system writes the pages back on its own, flush() or a flush interval only bound how much a
+// crash of the whole machine can lose, and the flushing runs on its own thread, never in run().
+//
+// File layout, every number little endian:
+//   0  "BCIM" magic
+//   4  version (byte, VERSION)
+//   5  byte order (byte, 1 = little endian)
+//   6  reserved (2 bytes)
+//   8  offset of the machine record (int, HEADER)
+//   12 reserved up to HEADER
+//   64 machine record, laid out like a MachineArena record (register block, then the 4096 words)
+public final class MappedMachine implements Closeable {
+
+    static final int MAGIC = 0x4D494342; // "BCIM" read as a little endian int
+    public static final int VERSION = 1;
+    static final int HEADER = 64;
+    public static final int FILE_SIZE = HEADER + MachineArena.STRIDE;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private ScheduledExecutorService flusher; // null when only flushed by hand
+
+    private MappedMachine(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Makes (or overwrites) the file with a machine at the start of the image
+    public static MappedMachine create(Path path, ProgramImage image) throws IOException {
+        return create(path, new BasicComputer(image).snapshot());
+    }
+
+    // Makes (or overwrites) the file with the state of the snapshot
+    public static MappedMachine create(Path path, Snapshot state) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        MappedMachine machine = new MappedMachine(path, channel);
+        MappedByteBuffer buffer = machine.buffer;
+
+        buffer.putInt(0, MAGIC);
+        buffer.put(4, (byte) VERSION);
+        buffer.put(5, (byte) 1);
+        buffer.putInt(8, HEADER);
+        MachineArena.write(buffer, HEADER, state);
+        buffer.force();
+
+        Logger.Declare("Machine Image Created At " + path);
+        return machine;
+    }
+
+    public static MappedMachine open(Path path) throws IOException, FileNotParsed {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long size = channel.size();
+        if (size != FILE_SIZE) {
+            channel.close();
+            Logger.Error("File at path: {" + path + "} is not a machine image (size " + size + ")");
+            throw new FileNotParsed("File at path: {" + path + "} is not a machine image");
+        }
+
+        MappedMachine machine = new MappedMachine(path, channel);
+        MappedByteBuffer buffer = machine.buffer;
+
+        if (buffer.getInt(0) != MAGIC || buffer.get(4) != VERSION || buffer.get(5) != 1
+                || buffer.getInt(8) != HEADER) {
+            channel.close();
+            Logger.Error("File at path: {" + path + "} is not a version " + VERSION + " machine image");
+            throw new FileNotParsed("File at path: {" + path + "} is not a version " + VERSION + " machine image");
+        }
+
+        Logger.Declare("Machine Image Opened At " + path);
+        return machine;
+    }
+
+    // Runs at most maxInstructions instructions in the file, returns the number of instructions retired
+    public long run(long maxInstructions) {
+        return MachineArena.execute(buffer, HEADER, maxInstructions);
+    }
+
+    // A heap computer holding the state of the file, later changes to either one stay apart
+    public BasicComputer toComputer() {
+        BasicComputer computer = new BasicComputer();
+        computer.restore(snapshot());
+        return computer;
+    }
+
+    public Snapshot snapshot() {
+        return MachineArena.read(buffer, HEADER, new Snapshot());
+    }
+
+    // Overwrites the file with the state of the computer
+    public boolean store(BasicComputer computer) {
+        MachineArena.write(buffer, HEADER, computer.snapshot());
+        return true;
+    }
+
+    // Writes the dirty pages of the file back now
+    public boolean flush() {
+        buffer.force();
+        return true;
+    }
+
+    // Flushes every interval milliseconds on a background thread, 0 stops it
+    public synchronized boolean setFlushInterval(long milliseconds) {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+        }
+
+        if (milliseconds > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "machine-image-flush " + path.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(buffer::force, milliseconds, milliseconds, TimeUnit.MILLISECONDS);
+        }
+
+        return true;
+    }
+
+    public short getRegister(Register register) {
+        return MachineArena.register(buffer, HEADER, register);
+    }
+
+    public byte getFlags() {
+        return buffer.get(HEADER + MachineArena.FLAGS);
+    }
+
+    public boolean isStopped() {
+        return (getFlags() & 0b1) != 0;
+    }
+
+    public boolean setINPR(byte value) {
+        buffer.put(HEADER + MachineArena.INPR, value);
+        return true;
+    }
+
+    public boolean setFGI(int value) {
+        return MachineArena.setFlag(buffer, HEADER, 0b100, value != 0);
+    }
+
+    public boolean setFGO(int value) {
+        return MachineArena.setFlag(buffer, HEADER, 0b1000, value != 0);
+    }
+
+    public short getMemory(int address) {
+        return buffer.getShort(HEADER + MachineArena.MEMORY + ((address & 0x0FFF) << 1));
+    }
+
+    public long getInstructionsRetired() {
+        return buffer.getLong(HEADER + MachineArena.RETIRED);
+    }
+
+    public long getCyclesElapsed() {
+        return buffer.getLong(HEADER + MachineArena.ELAPSED);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // Stops the flush thread, flushes once more and unmaps the file (the mapping goes with the buffer)
+    @Override
+    public void close() throws IOException {
+        setFlushInterval(0);
+        buffer.force();
+        channel.close();
+    }
+}
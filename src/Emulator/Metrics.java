@@ -0,0 +1,140 @@
+package Emulator;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import Debugger.Logger;
+
+// Always on counters: instructions retired, guest cycles, interrupts taken, halts, invalid instructions and
+// bytes read (INP) and written (OUT).
+// Every BasicComputer counts its own in a plain array written only by the thread running it, and adds them to
+// the process wide sums when a run returns (every PUBLISH_INTERVAL steps for completeInstruction()), never per
+// instruction. The sums are LongAdders, striped cells, so farm threads on every core adding at once do not
+// fight over one cache line.
+// Both are readable through snapshots (BasicComputer.getMetrics, processSnapshot) and as JMX MBeans
+// (registerProcess, register).
+public final class Metrics implements MetricsMBean {
+
+    public static final String DOMAIN = "Emulator";
+
+    // indices of the counter arrays computers keep (see BasicComputer.getMetrics)
+    static final int INSTRUCTIONS = 0;
+    static final int CYCLES = 1;
+    static final int INTERRUPTS = 2;
+    static final int HALTS = 3;
+    static final int INVALID = 4;
+    static final int BYTES_IN = 5;
+    static final int BYTES_OUT = 6;
+    static final int COUNTERS = 7;
+
+    // single steps a computer may count before it adds them to the process sums
+    static final long PUBLISH_INTERVAL = 4096;
+
+    private static final LongAdder[] SUMS = new LongAdder[COUNTERS];
+
+    static {
+        for (int i = 0; i < COUNTERS; i++)
+            SUMS[i] = new LongAdder();
+    }
+
+    private final BasicComputer computer; // null for the process wide sums
+
+    private Metrics(BasicComputer computer) {
+        this.computer = computer;
+    }
+
+    // Adds what a computer counted since it last published to the process sums
+    static void publish(long[] counters, long[] published) {
+        for (int i = 0; i < COUNTERS; i++) {
+            long delta = counters[i] - published[i];
+            if (delta != 0) {
+                SUMS[i].add(delta);
+                published[i] = counters[i];
+            }
+        }
+    }
+
+    static MetricsSnapshot snapshot(long[] counters) {
+        return new MetricsSnapshot(counters[INSTRUCTIONS], counters[CYCLES], counters[INTERRUPTS], counters[HALTS],
+                counters[INVALID], counters[BYTES_IN], counters[BYTES_OUT]);
+    }
+
+    // Sums over every computer of the process. Runs still going are in up to their last return and computers
+    // driven by completeInstruction() up to their last PUBLISH_INTERVAL steps
+    public static MetricsSnapshot processSnapshot() {
+        long[] sums = new long[COUNTERS];
+        for (int i = 0; i < COUNTERS; i++)
+            sums[i] = SUMS[i].sum();
+        return snapshot(sums);
+    }
+
+    // Registers the process wide sums as Emulator:type=Metrics,name=process (once, later calls do nothing)
+    public static synchronized ObjectName registerProcess() throws JMException {
+        ObjectName name = new ObjectName(DOMAIN + ":type=Metrics,name=process");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        if (!server.isRegistered(name)) {
+            server.registerMBean(new Metrics(null), name);
+            Logger.Declare("Process Metrics Registered As " + name);
+        }
+        return name;
+    }
+
+    // Registers the counters of one computer as Emulator:type=Metrics,name=<name>.
+    // The MBean keeps the computer alive, unregister it when the computer is done with
+    public static ObjectName register(BasicComputer computer, String name) throws JMException {
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=Metrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new Metrics(computer), objectName);
+
+        Logger.Declare("Computer Metrics Registered As " + objectName);
+        return objectName;
+    }
+
+    public static boolean unregister(ObjectName name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        return true;
+    }
+
+    private MetricsSnapshot snapshot() {
+        return computer == null ? processSnapshot() : computer.getMetrics();
+    }
+
+    @Override
+    public long getInstructionsRetired() {
+        return snapshot().getInstructionsRetired();
+    }
+
+    @Override
+    public long getCyclesElapsed() {
+        return snapshot().getCyclesElapsed();
+    }
+
+    @Override
+    public long getInterrupts() {
+        return snapshot().getInterrupts();
+    }
+
+    @Override
+    public long getHalts() {
+        return snapshot().getHalts();
+    }
+
+    @Override
+    public long getInvalidInstructions() {
+        return snapshot().getInvalidInstructions();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return snapshot().getBytesIn();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return snapshot().getBytesOut();
+    }
+}
@@ -0,0 +1,19 @@
+package Emulator;
+
+// JMX view of Metrics, one attribute per counter
+public interface MetricsMBean {
+
+    long getInstructionsRetired();
+
+    long getCyclesElapsed();
+
+    long getInterrupts();
+
+    long getHalts();
+
+    long getInvalidInstructions();
+
+    long getBytesIn();
+
+    long getBytesOut();
+}
@@ -0,0 +1,67 @@
+package Emulator;
+
+// The counters of one computer (BasicComputer.getMetrics) or of the whole process (Metrics.processSnapshot)
+// at one moment
+public final class MetricsSnapshot {
+
+    private final long instructionsRetired;
+    private final long cyclesElapsed;
+    private final long interrupts;
+    private final long halts;
+    private final long invalidInstructions;
+    private final long bytesIn;
+    private final long bytesOut;
+
+    MetricsSnapshot(long instructionsRetired, long cyclesElapsed, long interrupts, long halts,
+            long invalidInstructions, long bytesIn, long bytesOut) {
+        this.instructionsRetired = instructionsRetired;
+        this.cyclesElapsed = cyclesElapsed;
+        this.interrupts = interrupts;
+        this.halts = halts;
+        this.invalidInstructions = invalidInstructions;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+    }
+
+    // What happened between an earlier snapshot and this one
+    public MetricsSnapshot minus(MetricsSnapshot earlier) {
+        return new MetricsSnapshot(instructionsRetired - earlier.instructionsRetired,
+                cyclesElapsed - earlier.cyclesElapsed, interrupts - earlier.interrupts, halts - earlier.halts,
+                invalidInstructions - earlier.invalidInstructions, bytesIn - earlier.bytesIn,
+                bytesOut - earlier.bytesOut);
+    }
+
+    public long getInstructionsRetired() {
+        return instructionsRetired;
+    }
+
+    public long getCyclesElapsed() {
+        return cyclesElapsed;
+    }
+
+    public long getInterrupts() {
+        return interrupts;
+    }
+
+    public long getHalts() {
+        return halts;
+    }
+
+    public long getInvalidInstructions() {
+        return invalidInstructions;
+    }
+
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    @Override
+    public String toString() {
+        return "instructions=" + instructionsRetired + " cycles=" + cyclesElapsed + " interrupts=" + interrupts
+                + " halts=" + halts + " invalid=" + invalidInstructions + " in=" + bytesIn + " out=" + bytesOut;
+    }
+}
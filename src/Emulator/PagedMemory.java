@@ -0,0 +1,118 @@
+package Emulator;
+
+// The 4096 words of a computer, split into 64 pages of 64 words.
+// Pages start out shared (with a ProgramImage, or the zero page) and are copied on their first write,
+// so computers running the same program only pay for the pages they actually change.
+public final class PagedMemory {
+
+    public static final int PAGE_SIZE = 64;
+    public static final int PAGE_SHIFT = 6;
+    public static final int PAGE_MASK = PAGE_SIZE - 1;
+    public static final int PAGE_COUNT = 4096 / PAGE_SIZE;
+
+    static final short[] ZERO_PAGE = new short[PAGE_SIZE]; // shared by every empty page, never written
+
+    final short[][] pages = new short[PAGE_COUNT][]; // every page, shared or not
+    final short[][] writable = new short[PAGE_COUNT][]; // the pages owned by this memory (null while shared)
+
+    private final int[] dirtyPages = new int[PAGE_COUNT]; // pages made writable since the last load / capture
+    private int dirtyCount = 0;
+
+    public PagedMemory() {
+        for (int page = 0; page < PAGE_COUNT; page++)
+            pages[page] = ZERO_PAGE;
+    }
+
+    public PagedMemory(ProgramImage image) {
+        load(image);
+    }
+
+    // Copies the 4096 words, the array is not kept
+    public PagedMemory(short[] words) {
+        this(ProgramImage.of(words));
+    }
+
+    // Replaces every page with the (shared) pages of the image
+    public void load(ProgramImage image) {
+        for (int page = 0; page < PAGE_COUNT; page++) {
+            pages[page] = image.pages[page];
+            writable[page] = null;
+        }
+        dirtyCount = 0;
+    }
+
+    // Copies the page table into the given one and shares every page with it,
+    // only the pages written since the last capture have to be handed back
+    void capture(short[][] into) {
+        System.arraycopy(pages, 0, into, 0, PAGE_COUNT);
+        shareDirtyPages();
+    }
+
+    // Goes back to a page table made by capture, the pages stay shared with it
+    void restore(short[][] from) {
+        shareDirtyPages();
+        System.arraycopy(from, 0, pages, 0, PAGE_COUNT);
+    }
+
+    private void shareDirtyPages() {
+        for (int i = 0; i < dirtyCount; i++)
+            writable[dirtyPages[i]] = null;
+        dirtyCount = 0;
+    }
+
+    // Pages written since the last load, capture or restore
+    public int getDirtyPageCount() {
+        return dirtyCount;
+    }
+
+    // The address must be 0 - 4095
+    public short read(int address) {
+        return pages[address >>> PAGE_SHIFT][address & PAGE_MASK];
+    }
+
+    // The address must be 0 - 4095
+    public void write(int address, short value) {
+        short[] page = writable[address >>> PAGE_SHIFT];
+
+        if (page == null)
+            page = copyPage(address >>> PAGE_SHIFT);
+
+        page[address & PAGE_MASK] = value;
+    }
+
+    // Used by translated code, which keeps pages in locals
+    short[] readablePage(int page) {
+        return pages[page];
+    }
+
+    short[] writablePage(int page) {
+        short[] content = writable[page];
+        return content != null ? content : copyPage(page);
+    }
+
+    private short[] copyPage(int page) {
+        short[] copy = pages[page].clone();
+        pages[page] = copy;
+        writable[page] = copy;
+        dirtyPages[dirtyCount++] = page;
+        return copy;
+    }
+
+    public short[] toArray() {
+        short[] words = new short[4096];
+        for (int page = 0; page < PAGE_COUNT; page++)
+            System.arraycopy(pages[page], 0, words, page << PAGE_SHIFT, PAGE_SIZE);
+
+        return words;
+    }
+
+    // Pages this memory owns (has written to) instead of sharing
+    public int getPrivatePageCount() {
+        int count = 0;
+        for (short[] page : writable)
+            if (page != null)
+                count++;
+
+        return count;
+    }
+}
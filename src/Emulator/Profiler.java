@@ -0,0 +1,199 @@
+package Emulator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// Flat execution profile of a BasicComputer (see BasicComputer.setProfiler), kept in plain counter arrays:
+// executions and cycles per instruction address, executions per instruction kind and reads and writes per
+// memory word. Reads are the operands of AND / ADD / LDA / ISZ and the pointers of indirect instructions,
+// writes are STA / BSA / ISZ and the return address of the interrupt cycle; instruction fetches are the
+// executions. While a profiler is set the computer runs every instruction through the interpreter (no block
+// translation, fused sequences or skipped polling loops) so every one of them is counted; without one the
+// computer pays nothing for it.
+public final class Profiler extends ExecutionProbe {
+
+    private final long[] executions = new long[4096];
+    private final long[] cycles = new long[4096];
+    private final long[] opcodes = new long[InstructionTable.HANDLER_COUNT];
+    private final long[] reads = new long[4096];
+    private final long[] writes = new long[4096];
+    private long interrupts = 0;
+
+    @Override
+    void count(int address, int handler, int word, int operand) {
+        executions[address]++;
+        cycles[address] += InstructionTable.CYCLES[word];
+        opcodes[handler]++;
+
+        if (handler <= InstructionTable.ISZ) {
+            if (word >= 0x8000)
+                reads[word & 0x0FFF]++;
+
+            switch (handler) {
+                case InstructionTable.STA:
+                case InstructionTable.BSA:
+                    writes[operand]++;
+                    break;
+                case InstructionTable.ISZ:
+                    reads[operand]++;
+                    writes[operand]++;
+                    break;
+                case InstructionTable.BUN:
+                    break;
+                default:
+                    reads[operand]++;
+                    break;
+            }
+        }
+    }
+
+    @Override
+    void interrupt() {
+        interrupts++;
+        writes[0]++;
+    }
+
+    public boolean reset() {
+        Arrays.fill(executions, 0);
+        Arrays.fill(cycles, 0);
+        Arrays.fill(opcodes, 0);
+        Arrays.fill(reads, 0);
+        Arrays.fill(writes, 0);
+        interrupts = 0;
+        return true;
+    }
+
+    public long getExecutions(int address) {
+        return executions[address & 0x0FFF];
+    }
+
+    public long getCycles(int address) {
+        return cycles[address & 0x0FFF];
+    }
+
+    public long getReads(int address) {
+        return reads[address & 0x0FFF];
+    }
+
+    public long getWrites(int address) {
+        return writes[address & 0x0FFF];
+    }
+
+    // Executions of one instruction (by name as in LanguageCompiler.instructionSet), 0 for an unknown name
+    public long getExecutions(String instruction) {
+        for (int handler = 0; handler < opcodes.length; handler++)
+            if (InstructionTable.NAMES[handler].equalsIgnoreCase(instruction))
+                return opcodes[handler];
+        return 0;
+    }
+
+    public long getInterrupts() {
+        return interrupts;
+    }
+
+    public long getTotalExecutions() {
+        long total = 0;
+        for (long count : opcodes)
+            total += count;
+        return total;
+    }
+
+    public long getTotalCycles() {
+        long total = interrupts * InstructionTable.INTERRUPT_CYCLES;
+        for (long count : cycles)
+            total += count;
+        return total;
+    }
+
+    // Opcode mix and the top hottest addresses (by cycles), words shown as they are in memory now
+    public String report(BasicComputer computer, int top) {
+        StringBuilder report = new StringBuilder();
+        long total = getTotalExecutions();
+        long totalCycles = getTotalCycles();
+
+        report.append(String.format(Locale.ROOT, "%d instructions, %d cycles, %d interrupts%n%nOpcode mix:%n",
+                total, totalCycles, interrupts));
+
+        for (int handler : sorted(opcodes, opcodes.length))
+            report.append(String.format(Locale.ROOT, "  %-16s %14d %6.2f%%%n", InstructionTable.NAMES[handler],
+                    opcodes[handler], percent(opcodes[handler], total)));
+
+        report.append(String.format(Locale.ROOT, "%nHot addresses:%n  %-4s %-10s %14s %14s %7s%n", "addr",
+                "word", "executions", "cycles", "cycles"));
+
+        for (int address : sorted(cycles, top)) {
+            int word = computer.getMemory(address) & 0xFFFF;
+            report.append(String.format(Locale.ROOT, "  %03X  %-10s %14d %14d %6.2f%%%n", address,
+                    disassemble(word), executions[address], cycles[address], percent(cycles[address], totalCycles)));
+        }
+
+        report.append(String.format(Locale.ROOT, "%nHot memory words:%n  %-4s %14s %14s%n", "addr", "reads",
+                "writes"));
+
+        long[] accesses = new long[4096];
+        for (int address = 0; address < 4096; address++)
+            accesses[address] = reads[address] + writes[address];
+        for (int address : sorted(accesses, top))
+            report.append(String.format(Locale.ROOT, "  %03X  %14d %14d%n", address, reads[address],
+                    writes[address]));
+
+        return report.toString();
+    }
+
+    // address,executions,cycles,reads,writes for every address that was used
+    public String toAddressCsv() {
+        StringBuilder csv = new StringBuilder("address,executions,cycles,reads,writes\n");
+        for (int address = 0; address < 4096; address++)
+            if (executions[address] != 0 || reads[address] != 0 || writes[address] != 0)
+                csv.append(String.format(Locale.ROOT, "%03X,%d,%d,%d,%d%n", address, executions[address],
+                        cycles[address], reads[address], writes[address]));
+        return csv.toString();
+    }
+
+    // opcode,executions for every instruction kind that ran
+    public String toOpcodeCsv() {
+        StringBuilder csv = new StringBuilder("opcode,executions\n");
+        for (int handler = 0; handler < opcodes.length; handler++)
+            if (opcodes[handler] != 0)
+                csv.append(InstructionTable.NAMES[handler]).append(',').append(opcodes[handler]).append('\n');
+        csv.append("INTERRUPT,").append(interrupts).append('\n');
+        return csv.toString();
+    }
+
+    // Writes prefix-addresses.csv and prefix-opcodes.csv
+    public boolean writeCsv(String prefix) throws IOException {
+        Files.writeString(Path.of(prefix + "-addresses.csv"), toAddressCsv());
+        Files.writeString(Path.of(prefix + "-opcodes.csv"), toOpcodeCsv());
+        return true;
+    }
+
+    static String disassemble(int word) {
+        int handler = InstructionTable.HANDLER[word];
+        if (handler <= InstructionTable.ISZ)
+            return String.format(Locale.ROOT, "%s %03X%s", InstructionTable.NAMES[handler], word & 0x0FFF,
+                    word >= 0x8000 ? " I" : "");
+        if (handler >= InstructionTable.INVALID_REGISTER)
+            return String.format(Locale.ROOT, "%04X", word);
+        return InstructionTable.NAMES[handler];
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+
+    // Indices of the (at most) limit largest non zero counters, largest first
+    private static List<Integer> sorted(long[] counters, int limit) {
+        List<Integer> indices = new ArrayList<Integer>();
+        for (int i = 0; i < counters.length; i++)
+            if (counters[i] != 0)
+                indices.add(i);
+
+        indices.sort((a, b) -> Long.compare(counters[b], counters[a]));
+        return indices.size() > limit ? indices.subList(0, limit) : indices;
+    }
+}
@@ -0,0 +1,52 @@
+package Emulator;
+
+// Read only memory image split into PagedMemory pages.
+// Every PagedMemory made from the same image shares these pages until it writes to them.
+public final class ProgramImage {
+
+    final short[][] pages = new short[PagedMemory.PAGE_COUNT][];
+    private volatile byte[] superInstructions; // made on first use, shared by every computer on the image
+
+    private ProgramImage(short[] words) {
+        for (int page = 0; page < PagedMemory.PAGE_COUNT; page++) {
+            short[] content = new short[PagedMemory.PAGE_SIZE];
+            boolean empty = true;
+
+            for (int i = 0; i < PagedMemory.PAGE_SIZE; i++) {
+                content[i] = words[(page << PagedMemory.PAGE_SHIFT) + i];
+                empty &= content[i] == 0;
+            }
+
+            pages[page] = empty ? PagedMemory.ZERO_PAGE : content;
+        }
+    }
+
+    // Copies the 4096 words, later changes to the array do not reach the image
+    public static ProgramImage of(short[] words) {
+        if (words.length != 4096)
+            throw new IllegalArgumentException("Memory image must hold 4096 words, got " + words.length);
+
+        return new ProgramImage(words);
+    }
+
+    public short read(int address) {
+        address &= 0x0FFF;
+        return pages[address >>> PagedMemory.PAGE_SHIFT][address & PagedMemory.PAGE_MASK];
+    }
+
+    // Fused sequence starting at every address (see SuperInstructions)
+    byte[] superInstructions() {
+        byte[] fusion = superInstructions;
+        if (fusion == null) // two threads may both scan, they get equal maps
+            superInstructions = fusion = SuperInstructions.scan(this);
+        return fusion;
+    }
+
+    public short[] toArray() {
+        short[] words = new short[4096];
+        for (int page = 0; page < PagedMemory.PAGE_COUNT; page++)
+            System.arraycopy(pages[page], 0, words, page << PagedMemory.PAGE_SHIFT, PagedMemory.PAGE_SIZE);
+
+        return words;
+    }
+}
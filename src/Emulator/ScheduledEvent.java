@@ -0,0 +1,10 @@
+package Emulator;
+
+// Something that happens at an exact cycle, like a device raising FGI or FGO (see EventScheduler).
+// Events run between instructions and may only change the I/O side of the computer:
+// INPR, the flags (through the setters) and reading OUTR.
+public interface ScheduledEvent {
+
+    void fire(BasicComputer computer, long cycle);
+
+}
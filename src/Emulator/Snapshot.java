@@ -0,0 +1,66 @@
+package Emulator;
+
+// Registers, flags and memory of a BasicComputer at one point (see BasicComputer.snapshot).
+// The memory pages are shared with the computer, so taking one costs the pages written since the last
+// snapshot instead of all 4096 words. A Snapshot can be handed back to snapshot() to be reused.
+public final class Snapshot {
+
+    int AC;
+    short PC;
+    short DR;
+    short AR;
+    short IR;
+    short TR;
+    byte SC;
+    byte INPR;
+    byte OUTR;
+    byte flags; // packed like BasicComputer.getFlags()
+    byte cycles;
+    long instructionsRetired;
+    long cyclesElapsed;
+
+    final short[][] pages = new short[PagedMemory.PAGE_COUNT][];
+
+    public Snapshot() {
+    }
+
+    public short getRegister(Register register) {
+        switch (register) {
+            case AR:
+                return AR;
+            case PC:
+                return PC;
+            case DR:
+                return DR;
+            case AC:
+                return (short) AC;
+            case IR:
+                return IR;
+            case TR:
+                return TR;
+            case OUTR:
+                return (short) (OUTR & 0xFF);
+            case INPR:
+                return (short) (INPR & 0xFF);
+            default: // SC
+                return SC;
+        }
+    }
+
+    public byte getFlags() {
+        return flags;
+    }
+
+    public short getMemory(int address) {
+        address &= 0x0FFF;
+        return pages[address >>> PagedMemory.PAGE_SHIFT][address & PagedMemory.PAGE_MASK];
+    }
+
+    public long getInstructionsRetired() {
+        return instructionsRetired;
+    }
+
+    public long getCyclesElapsed() {
+        return cyclesElapsed;
+    }
+}
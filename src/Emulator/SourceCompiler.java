@@ -0,0 +1,86 @@
+package Emulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import Debugger.Logger;
+
+// Compiles generated Java source in memory with the JDK compiler (used by the translation tiers)
+final class SourceCompiler {
+
+    private static final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+    private SourceCompiler() {
+    }
+
+    static boolean isAvailable() {
+        return compiler != null;
+    }
+
+    // Returns the class file of the given top level class, or null if it did not compile
+    static byte[] compile(String className, String source) {
+        if (compiler == null) {
+            Logger.Warn("No Java compiler available (running on a JRE?)");
+            return null;
+        }
+
+        StandardJavaFileManager standardManager = compiler.getStandardFileManager(null, null, null);
+        Map<String, ByteArrayOutputStream> output = new HashMap<String, ByteArrayOutputStream>();
+
+        JavaFileManager fileManager = new ForwardingJavaFileManager<JavaFileManager>(standardManager) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String name, JavaFileObject.Kind kind,
+                    FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("mem:///" + name.replace('.', '/') + kind.extension),
+                        kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                        output.put(name, stream);
+                        return stream;
+                    }
+                };
+            }
+        };
+
+        JavaFileObject sourceFile = new SimpleJavaFileObject(
+                URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        List<String> options = new ArrayList<String>();
+        options.add("-classpath");
+        options.add(System.getProperty("java.class.path"));
+        options.add("-proc:none");
+        options.add("-g:none");
+
+        StringWriter errors = new StringWriter();
+        boolean compiled = compiler.getTask(errors, fileManager, null, options, null, List.of(sourceFile)).call();
+
+        if (!compiled || !output.containsKey(className)) {
+            Logger.Error("Translated class " + className + " did not compile: " + errors);
+            return null;
+        }
+
+        return output.get(className).toByteArray();
+    }
+}
@@ -0,0 +1,135 @@
+package Emulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.locks.LockSupport;
+
+// Input device fed by a host thread through a ByteRing.
+// The host side offers bytes (or copies a whole InputStream with write / transferFrom, which wait while the
+// ring is full), the computer side takes one byte into INPR and sets FGI whenever the guest has read the last
+// one. An empty ring is polled every pollInterval cycles, the computer thread never waits on the host.
+public final class StreamInputDevice implements IODevice, ScheduledEvent {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final long DEFAULT_POLL_INTERVAL = 256;
+
+    private final ByteRing ring;
+    private final long pollInterval;
+    private volatile boolean closed = false;
+
+    private EventScheduler scheduler; // computer side only
+    private boolean scheduled = false; // an event is pending, computer side only
+
+    public StreamInputDevice() {
+        this(DEFAULT_CAPACITY, DEFAULT_POLL_INTERVAL);
+    }
+
+    public StreamInputDevice(int capacity, long pollInterval) {
+        this.ring = new ByteRing(capacity);
+        this.pollInterval = Math.max(1, pollInterval);
+    }
+
+    // Host side, never waits: returns how many of the bytes fit
+    public int offer(byte[] values, int offset, int length) {
+        return ring.offer(values, offset, length);
+    }
+
+    public boolean offer(byte value) {
+        return ring.offer(value);
+    }
+
+    // Host side, waits while the ring is full
+    public void write(byte[] values, int offset, int length) {
+        int idle = 0;
+
+        while (length > 0) {
+            int count = ring.offer(values, offset, length);
+            offset += count;
+            length -= count;
+
+            if (count > 0)
+                idle = 0;
+            else
+                backOff(idle++);
+        }
+    }
+
+    // Host side, copies the stream until it ends and then closes the device, returns the bytes copied
+    public long transferFrom(InputStream input) throws IOException {
+        byte[] chunk = new byte[Math.min(ring.capacity(), 8192)];
+        long total = 0;
+
+        for (int count = input.read(chunk); count >= 0; count = input.read(chunk)) {
+            write(chunk, 0, count);
+            total += count;
+        }
+
+        close();
+        return total;
+    }
+
+    // No more input is coming, the device stops polling once the ring is empty
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Bytes waiting in the ring (not counting INPR)
+    public int available() {
+        return ring.size();
+    }
+
+    @Override
+    public void attach(BasicComputer computer, EventScheduler scheduler, long cycle) {
+        this.scheduler = scheduler;
+        schedule(cycle);
+    }
+
+    // The guest took INPR, the next byte is ready right away if the host has sent one. While the ring is being
+    // polled the poll already pending brings it
+    @Override
+    public void onInput(long cycle) {
+        schedule(cycle);
+    }
+
+    private void schedule(long cycle) {
+        if (!scheduled) {
+            scheduled = true;
+            scheduler.schedule(cycle, this);
+        }
+    }
+
+    @Override
+    public void onOutput(byte value, long cycle) {
+    }
+
+    @Override
+    public void fire(BasicComputer computer, long cycle) {
+        scheduled = false;
+        if (computer.getFGI()) // INPR not read yet, onInput schedules the next byte
+            return;
+
+        boolean last = closed; // read before polling, so a byte sent just before close() is never missed
+        int value = ring.poll();
+
+        if (value >= 0) {
+            computer.setINPR((byte) value);
+            computer.setFGI(1);
+        } else if (!last) {
+            schedule(cycle + pollInterval);
+        }
+    }
+
+    // Spin first, then yield the core, so a host thread waiting on a busy computer does not burn it
+    static void backOff(int idle) {
+        if (idle < 64)
+            Thread.onSpinWait();
+        else if (idle < 128)
+            Thread.yield();
+        else
+            LockSupport.parkNanos(50_000);
+    }
+}
@@ -0,0 +1,122 @@
+package Emulator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+// Output device read by a host thread through a ByteRing.
+// Every OUT puts OUTR into the ring and FGO is set again as soon as it is in. When the ring is full the byte is
+// held and offered again every pollInterval cycles, FGO stays clear meanwhile so the guest waits on SKO
+// instead of the computer thread waiting on the host. An OUT that does not wait for FGO queues its byte behind
+// the held ones, so no byte is lost or reordered.
+public final class StreamOutputDevice implements IODevice, ScheduledEvent {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final long DEFAULT_POLL_INTERVAL = 256;
+
+    private final ByteRing ring;
+    private final long pollInterval;
+    private final byte[] chunk; // host side copy buffer for transferTo
+
+    private EventScheduler scheduler; // computer side only
+    private boolean scheduled = false; // an event is pending, computer side only
+    private byte[] held = new byte[16]; // bytes written while the ring was full, oldest at heldStart
+    private int heldStart = 0;
+    private int heldEnd = 0;
+
+    public StreamOutputDevice() {
+        this(DEFAULT_CAPACITY, DEFAULT_POLL_INTERVAL);
+    }
+
+    public StreamOutputDevice(int capacity, long pollInterval) {
+        this.ring = new ByteRing(capacity);
+        this.pollInterval = Math.max(1, pollInterval);
+        this.chunk = new byte[Math.min(ring.capacity(), 8192)];
+    }
+
+    // Host side, never waits: the next byte (0 - 255) or -1 if there is none yet
+    public int poll() {
+        return ring.poll();
+    }
+
+    public int poll(byte[] values, int offset, int length) {
+        return ring.poll(values, offset, length);
+    }
+
+    // Host side, copies whatever is in the ring right now, returns the bytes copied
+    public int transferTo(OutputStream output) throws IOException {
+        int total = 0;
+
+        for (int count = ring.poll(chunk, 0, chunk.length); count > 0; count = ring.poll(chunk, 0, chunk.length)) {
+            output.write(chunk, 0, count);
+            total += count;
+        }
+
+        return total;
+    }
+
+    public int available() {
+        return ring.size();
+    }
+
+    // Computer side: true if a byte is still held back by a full ring
+    public boolean hasPending() {
+        return heldEnd > heldStart;
+    }
+
+    @Override
+    public void attach(BasicComputer computer, EventScheduler scheduler, long cycle) {
+        this.scheduler = scheduler;
+        schedule(cycle); // ready from the start
+    }
+
+    @Override
+    public void onInput(long cycle) {
+    }
+
+    @Override
+    public void onOutput(byte value, long cycle) {
+        if (!hasPending() && ring.offer(value)) {
+            schedule(cycle);
+        } else {
+            hold(value);
+            schedule(cycle + pollInterval);
+        }
+    }
+
+    @Override
+    public void fire(BasicComputer computer, long cycle) {
+        scheduled = false;
+
+        while (hasPending()) {
+            if (!ring.offer(held[heldStart])) {
+                schedule(cycle + pollInterval);
+                return;
+            }
+            heldStart++;
+        }
+        heldStart = heldEnd = 0;
+
+        computer.setFGO(1);
+    }
+
+    private void schedule(long cycle) {
+        if (!scheduled) {
+            scheduled = true;
+            scheduler.schedule(cycle, this);
+        }
+    }
+
+    private void hold(byte value) {
+        if (heldEnd == held.length) {
+            int count = heldEnd - heldStart;
+            if (count < held.length / 2)
+                System.arraycopy(held, heldStart, held, 0, count);
+            else
+                held = Arrays.copyOfRange(held, heldStart, held.length * 2);
+            heldStart = 0;
+            heldEnd = count;
+        }
+        held[heldEnd++] = value;
+    }
+}
@@ -0,0 +1,50 @@
+package Emulator;
+
+// Common instruction sequences the interpreter runs as one fused handler:
+// LDA x / ADD y / STA z, ISZ x / BUN y and CLA / CLE.
+// The map made by scan() is only a hint, the interpreter checks the words again before fusing,
+// so a map that went stale after self modifying code just makes it fall back to single instructions.
+final class SuperInstructions {
+
+    static final byte NONE = 0;
+    static final byte LDA_ADD_STA = 1;
+    static final byte ISZ_BUN = 2;
+    static final byte CLA_CLE = 3;
+
+    static final int[] LENGTH = { 1, 3, 2, 2 }; // instructions in each sequence
+
+    // cycles that may pass before the last instruction of each sequence starts
+    static final int[] SPAN = { 0, 2 * InstructionTable.MAX_CYCLES, InstructionTable.MAX_CYCLES,
+            InstructionTable.MAX_CYCLES };
+
+    private SuperInstructions() {
+    }
+
+    // Sequence starting at every address of the image
+    static byte[] scan(ProgramImage image) {
+        byte[] fusion = new byte[4096];
+
+        for (int address = 0; address < 4096; address++)
+            fusion[address] = kind(image.read(address) & 0xFFFF, image.read(address + 1) & 0xFFFF,
+                    image.read(address + 2) & 0xFFFF);
+
+        return fusion;
+    }
+
+    static byte kind(int first, int second, int third) {
+        int a = InstructionTable.HANDLER[first];
+        int b = InstructionTable.HANDLER[second];
+
+        if (a == InstructionTable.LDA && b == InstructionTable.ADD
+                && InstructionTable.HANDLER[third] == InstructionTable.STA)
+            return LDA_ADD_STA;
+
+        if (a == InstructionTable.ISZ && b == InstructionTable.BUN)
+            return ISZ_BUN;
+
+        if (a == InstructionTable.CLA && b == InstructionTable.CLE)
+            return CLA_CLE;
+
+        return NONE;
+    }
+}
@@ -0,0 +1,59 @@
+package Emulator;
+
+// Input device feeding a fixed script of bytes, one every latency cycles after the previous one was read
+public final class TimedInputDevice implements IODevice, ScheduledEvent {
+
+    private final byte[] data;
+    private final long latency;
+    private int position = 0;
+    private boolean scheduled = false; // the next byte already has its event
+
+    private BasicComputer computer;
+    private EventScheduler scheduler;
+
+    public TimedInputDevice(byte[] data, long latency) {
+        this.data = data;
+        this.latency = latency;
+    }
+
+    @Override
+    public void attach(BasicComputer computer, EventScheduler scheduler, long cycle) {
+        this.computer = computer;
+        this.scheduler = scheduler;
+
+        scheduleNext(cycle);
+    }
+
+    // INP without waiting on FGI reads INPR again, the next byte keeps the event it already has
+    @Override
+    public void onInput(long cycle) {
+        scheduleNext(cycle);
+    }
+
+    private void scheduleNext(long cycle) {
+        if (!scheduled && position < data.length) {
+            scheduled = true;
+            scheduler.schedule(cycle + latency, this);
+        }
+    }
+
+    @Override
+    public void onOutput(byte value, long cycle) {
+    }
+
+    // The next byte is ready
+    @Override
+    public void fire(BasicComputer computer, long cycle) {
+        scheduled = false;
+        computer.setINPR(data[position++]);
+        computer.setFGI(1);
+    }
+
+    public int getBytesRead() {
+        return position;
+    }
+
+    public boolean isExhausted() {
+        return position >= data.length && !computer.getFGI();
+    }
+}
@@ -0,0 +1,54 @@
+package Emulator;
+
+import java.io.ByteArrayOutputStream;
+
+// Output device collecting every byte written with OUT, ready again (FGO set) latency cycles after each one
+public final class TimedOutputDevice implements IODevice, ScheduledEvent {
+
+    private final long latency;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    private EventScheduler scheduler;
+    private long readyAt = 0; // cycle the last byte is done at
+    private boolean scheduled = false; // an event is pending
+
+    public TimedOutputDevice(long latency) {
+        this.latency = latency;
+    }
+
+    @Override
+    public void attach(BasicComputer computer, EventScheduler scheduler, long cycle) {
+        this.scheduler = scheduler;
+        scheduled = true;
+        scheduler.schedule(cycle, this); // ready from the start
+    }
+
+    @Override
+    public void onInput(long cycle) {
+    }
+
+    @Override
+    public void onOutput(byte value, long cycle) {
+        output.write(value);
+        readyAt = cycle + latency;
+        if (!scheduled) {
+            scheduled = true;
+            scheduler.schedule(readyAt, this);
+        }
+    }
+
+    // OUT without waiting on FGO writes over the byte, its pending event comes too early and moves to readyAt
+    @Override
+    public void fire(BasicComputer computer, long cycle) {
+        if (cycle < readyAt) {
+            scheduler.schedule(readyAt, this);
+            return;
+        }
+        scheduled = false;
+        computer.setFGO(1);
+    }
+
+    public byte[] getOutput() {
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,11 @@
+package Emulator;
+
+// A straight line run of guest code compiled into a JVM class by BlockTranslator.
+// The registers are passed in (and handed back) through the state array, see the BlockTranslator constants.
+interface TranslatedBlock {
+
+    // Runs the block (looping while it branches back to its own start and the budget allows),
+    // returns the number of instructions retired
+    long execute(long[] state, PagedMemory memory, boolean[] code, long budget);
+
+}
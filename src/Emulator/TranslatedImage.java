@@ -0,0 +1,50 @@
+package Emulator;
+
+// Ahead of time translation of a memory image, made by ImageTranslator and attached with
+// BasicComputer.attachTranslation. The translated class is stateless so one instance can be shared by
+// any number of computers running the same image.
+public final class TranslatedImage {
+
+    final String hash; // hash of the image (and translator version) the class was made from
+    final TranslatedBlock program; // dispatches on PC over every translated block
+    final int[] leaders; // addresses the translation can be entered at
+    final int[] lengths; // instructions in the block at each leader
+    final boolean[] covered; // addresses holding translated instructions
+    final short[] words; // the translated instructions, to check an image before attaching
+
+    TranslatedImage(String hash, TranslatedBlock program, int[] leaders, int[] lengths, boolean[] covered,
+            short[] words) {
+        this.hash = hash;
+        this.program = program;
+        this.leaders = leaders;
+        this.lengths = lengths;
+        this.covered = covered;
+        this.words = words;
+    }
+
+    // True if every translated address of the given memory still holds the translated instruction
+    public boolean matches(PagedMemory memory) {
+        for (int i = 0; i < 4096; i++)
+            if (covered[i] && memory.read(i) != words[i])
+                return false;
+
+        return true;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public int getBlockCount() {
+        return leaders.length;
+    }
+
+    public int getInstructionCount() {
+        int count = 0;
+        for (boolean address : covered)
+            if (address)
+                count++;
+
+        return count;
+    }
+}
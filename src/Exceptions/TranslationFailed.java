@@ -0,0 +1,12 @@
+package Exceptions;
+
+public class TranslationFailed extends Exception {
+
+    public TranslationFailed() {
+        super();
+    }
+
+    public TranslationFailed(String message) {
+        super(message);
+    }
+}
@@ -1,27 +1,247 @@
 package Main;
 
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import Compiler.FileFormat;
 import Compiler.LanguageCompiler;
+import Debugger.Logger;
+import Emulator.BasicComputer;
+import Emulator.CallProfiler;
+import Emulator.ConsoleOutputDevice;
+import Emulator.Profiler;
+import Emulator.Register;
+import Emulator.TimedInputDevice;
+import Exceptions.FileNotParsed;
+import Exceptions.InvalidSyntax;
 
+// Headless runner: loads a program, runs it to HLT or to a budget, streams OUTR to stdout and reports the
+// throughput on stderr. Logging stays off unless --log is given, so the numbers are not the logger's.
 public class Main {
+
+    private static final String USAGE = "Usage: Main <program> [options]\n"
+            + "  <program>               .bin / .hex / .img file, anything else is read as assembly\n"
+            + "  --format bin|hex|asm|image  file format, instead of guessing it from the extension\n"
+            + "  --max-instructions N    stop after N instructions\n"
+            + "  --max-cycles N          stop once N cycles have passed\n"
+            + "  --input FILE            bytes the guest reads with INP\n"
+            + "  --jit                   translate hot blocks (needs a JDK)\n"
+            + "  --profile               report the opcode mix and hot addresses on stderr\n"
+            + "  --profile-csv PREFIX    write the profile to PREFIX-addresses.csv and PREFIX-opcodes.csv\n"
+            + "  --flame FILE            write the guest call stacks in collapsed flame graph format\n"
+            + "  --log                   turn the logger on\n"
+            + "  --opcodes               list the instructions and exit\n";
+
+    private static final int LONGEST_INSTRUCTION = 6; // cycles of ISZ, so a cycle budget is never passed
+
     public static void main(String[] args) {
+        System.exit(run(args));
+    }
 
-        for (String arg : args) {
-            switch (arg) {
-                case "":
+    // Returns the exit code: 0 when the program ran, 1 when it could not be loaded, 2 on bad arguments
+    static int run(String[] args) {
+        String program = null;
+        String format = null;
+        String input = null;
+        long maxInstructions = Long.MAX_VALUE;
+        long maxCycles = Long.MAX_VALUE;
+        boolean jit = false;
+        boolean log = false;
+        boolean profile = false;
+        String profileCsv = null;
+        String flame = null;
 
-                    break;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--format":
+                        format = args[++i].toUpperCase(Locale.ROOT);
+                        break;
+                    case "--max-instructions":
+                        maxInstructions = Long.parseLong(args[++i]);
+                        break;
+                    case "--max-cycles":
+                        maxCycles = Long.parseLong(args[++i]);
+                        break;
+                    case "--input":
+                        input = args[++i];
+                        break;
+                    case "--jit":
+                        jit = true;
+                        break;
+                    case "--profile":
+                        profile = true;
+                        break;
+                    case "--profile-csv":
+                        profileCsv = args[++i];
+                        break;
+                    case "--flame":
+                        flame = args[++i];
+                        break;
+                    case "--log":
+                        log = true;
+                        break;
+                    case "--opcodes":
+                        System.out.println("List of possible instructions:\n" + LanguageCompiler.displayOpCodes());
+                        return 0;
+                    case "--help":
+                        System.out.print(USAGE);
+                        return 0;
+                    default:
+                        if (args[i].startsWith("--") || program != null) {
+                            System.err.print("Unknown argument: " + args[i] + "\n" + USAGE);
+                            return 2;
+                        }
+                        program = args[i];
+                        break;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            System.err.print("Missing or invalid value for " + args[args.length - 1] + "\n" + USAGE);
+            return 2;
+        }
+
+        if (program == null) {
+            System.err.print(USAGE);
+            return 2;
+        }
+
+        if (format == null)
+            format = guessFormat(program);
 
+        Logger.isLogging = log;
+
+        BasicComputer computer = new BasicComputer();
+        Map<String, Integer> labels = new HashMap<String, Integer>();
+
+        try {
+            switch (format) {
+                case "BIN":
+                    LanguageCompiler.loadMemoryFromBinaryFile(program, computer);
+                    break;
+                case "HEX":
+                    LanguageCompiler.loadMemoryFromHexFile(program, computer);
+                    break;
+                case "IMAGE":
+                    LanguageCompiler.loadMemoryFromImageFile(program, computer);
+                    break;
+                case "ASM":
+                    computer.setMemory(LanguageCompiler.assembleFile(program, labels));
+                    break;
                 default:
-                    System.out.println("List of possible instructions:\n" + LanguageCompiler.displayOpCodes() + null);
+                    System.err.print("Unknown format: " + format + "\n" + USAGE);
+                    return 2;
+            }
+
+            if (input != null)
+                computer.setInputDevice(new TimedInputDevice(Files.readAllBytes(Paths.get(input)), 0));
+
+        } catch (InvalidSyntax e) {
+            System.err.println(program + ":" + e.getLine() + ": " + e.getMessage());
+            return 1;
+        } catch (FileNotParsed | FileNotFoundException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (IOException e) {
+            System.err.println("Could not read " + program + ": " + e);
+            return 1;
+        }
+
+        if (jit && !computer.setTranslation(true))
+            System.err.println("Block translation needs a JDK, running interpreted");
+
+        Profiler profiler = null;
+        if (profile || profileCsv != null) {
+            profiler = new Profiler();
+            computer.setProfiler(profiler);
+        }
+
+        CallProfiler callProfiler = null;
+        if (flame != null) {
+            callProfiler = new CallProfiler();
+            for (Map.Entry<String, Integer> label : labels.entrySet())
+                callProfiler.setName(label.getValue(), label.getKey());
+            computer.setCallProfiler(callProfiler);
+        }
+
+        ConsoleOutputDevice output = new ConsoleOutputDevice(new BufferedOutputStream(System.out, 1 << 16), 0);
+        computer.setOutputDevice(output);
+
+        long startInstructions = computer.getInstructionsRetired();
+        long startCycles = computer.getCyclesElapsed();
+
+        long start = System.nanoTime();
+        long instructions = 0;
+
+        if (maxCycles == Long.MAX_VALUE) {
+            instructions = computer.run(maxInstructions);
+        } else {
+            // slices small enough that no instruction can start past the cycle budget
+            while (!computer.isStopped() && instructions < maxInstructions) {
+                long cyclesLeft = maxCycles - (computer.getCyclesElapsed() - startCycles);
+                if (cyclesLeft < LONGEST_INSTRUCTION)
                     break;
+
+                long slice = Math.min(maxInstructions - instructions, cyclesLeft / LONGEST_INSTRUCTION);
+                long retired = computer.run(slice);
+                if (retired == 0)
+                    break;
+                instructions += retired;
             }
         }
 
-        System.out.println(0x20 + "");
+        long nanos = System.nanoTime() - start;
+
+        output.flush();
+        if (output.getFailure() != null)
+            System.err.println("Writing the output failed: " + output.getFailure());
 
-        System.out.println(Integer.toBinaryString(2) + " " + Integer.toBinaryString(2).length());
+        instructions = computer.getInstructionsRetired() - startInstructions;
+        long cycles = computer.getCyclesElapsed() - startCycles;
+
+        String reason = computer.isStopped() ? "halted" : "budget reached";
+        System.err.printf(Locale.ROOT, "%n%s at PC %03X: %d instructions, %d cycles, %.3f ms, %.2f MIPS%n",
+                reason, computer.getRegister(Register.PC) & 0x0FFF, instructions, cycles, nanos / 1e6,
+                nanos == 0 ? 0.0 : instructions * 1e3 / nanos);
+
+        if (profile)
+            System.err.print("\n" + profiler.report(computer, 20));
+
+        if (profileCsv != null) {
+            try {
+                profiler.writeCsv(profileCsv);
+            } catch (IOException e) {
+                System.err.println("Could not write the profile: " + e);
+            }
+        }
+
+        if (flame != null) {
+            try {
+                callProfiler.writeCollapsed(Paths.get(flame));
+            } catch (IOException e) {
+                System.err.println("Could not write the call stacks: " + e);
+            }
+        }
+
+        computer.detachDevices();
+        return 0;
+    }
 
-        System.out.println(Integer.toHexString(0b1010));
+    private static String guessFormat(String program) {
+        String name = program.toLowerCase(Locale.ROOT);
 
+        if (name.endsWith(".bin"))
+            return FileFormat.BIN.name();
+        if (name.endsWith(".hex"))
+            return FileFormat.HEX.name();
+        if (name.endsWith(".img") || name.endsWith(".image"))
+            return FileFormat.IMAGE.name();
+        return "ASM";
     }
 }
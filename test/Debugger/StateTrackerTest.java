@@ -0,0 +1,79 @@
+package Debugger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import Emulator.BasicComputer;
+import Emulator.Register;
+
+// The tracker observes its computer and keeps the memory, register and flag changes handed over in batches
+class StateTrackerTest {
+
+    @BeforeAll
+    static void quiet() {
+        Logger.isLogging = false;
+    }
+
+    // LDA 10, ADD 11, STA 10, ISZ 12, BUN 0, CME, HLT: adds 5 to the word at 10 100 times, then sets E
+    private static BasicComputer computer() {
+        short[] memory = new short[4096];
+        short[] program = { 0x2010, 0x1011, 0x3010, 0x6012, 0x4000, 0x7100, 0x7001 };
+        System.arraycopy(program, 0, memory, 0, program.length);
+        memory[0x11] = 5;
+        memory[0x12] = -100;
+        return new BasicComputer(memory);
+    }
+
+    @Test
+    void keepsWhatTheRunChanged() {
+        BasicComputer computer = computer();
+        StateTracker tracker = new StateTracker(computer);
+        computer.setChangeInterval(7);
+
+        assertEquals(5, tracker.getMemory(0x11));
+        assertFalse(tracker.resume());
+        assertTrue(computer.isStopped());
+
+        assertEquals(500, tracker.getMemory(0x10));
+        assertEquals(0, tracker.getMemory(0x12));
+        assertTrue(tracker.wasWritten(0x10));
+        assertTrue(tracker.wasWritten(0x12));
+        assertFalse(tracker.wasWritten(0x11)); // only read
+        assertFalse(tracker.wasWritten(0));
+
+        for (Register register : Register.values())
+            assertEquals(computer.getRegister(register), tracker.getRegister(register), register.name());
+        assertTrue(tracker.wasChanged(Register.AC));
+        assertTrue(tracker.wasChanged(Register.PC));
+        assertFalse(tracker.wasChanged(Register.INPR));
+
+        assertEquals(computer.getFlags(), tracker.getFlags());
+        assertTrue(tracker.flagsChanged());
+        assertEquals(0b10001, tracker.getFlags() & 0b10001); // E and S
+    }
+
+    @Test
+    void clearChangesStartsOver() {
+        BasicComputer computer = computer();
+        StateTracker tracker = new StateTracker(computer);
+
+        tracker.resume(3); // LDA, ADD, STA
+        assertTrue(tracker.wasWritten(0x10));
+        assertTrue(tracker.clearChanges());
+        assertFalse(tracker.wasWritten(0x10));
+        assertFalse(tracker.wasChanged(Register.AC));
+        assertFalse(tracker.flagsChanged());
+
+        tracker.step(); // ISZ 12
+        assertTrue(tracker.wasWritten(0x12));
+        assertEquals(-99, tracker.getMemory(0x12));
+        assertFalse(tracker.wasWritten(0x10));
+        assertEquals(5, tracker.getMemory(0x10));
+        assertTrue(tracker.wasChanged(Register.PC));
+        assertFalse(tracker.wasChanged(Register.AC));
+    }
+}
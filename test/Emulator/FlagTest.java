@@ -0,0 +1,316 @@
+package Emulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import Debugger.BasicComputerListener;
+import Debugger.Logger;
+
+// Every flag lives in its own field (see BasicComputer): each setter and instruction must change its own flag
+// and nothing else, and getFlags() must pack them in the documented bits
+class FlagTest {
+
+    private static final int S = 0b1;
+    private static final int IEN = 0b10;
+    private static final int FGI = 0b100;
+    private static final int FGO = 0b1000;
+    private static final int E = 0b10000;
+    private static final int CARRY = 0b100000;
+    private static final int I = 0b1000000;
+
+    @BeforeAll
+    static void quiet() {
+        Logger.isLogging = false;
+    }
+
+    // A computer with the words loaded from address 0 over the rest of memory
+    static BasicComputer computer(short[] memory, int... words) {
+        for (int i = 0; i < words.length; i++)
+            memory[i] = (short) words[i];
+
+        BasicComputer computer = new BasicComputer(memory);
+        computer.setListener(new Quiet());
+        return computer;
+    }
+
+    static void step(BasicComputer computer, int instructions) {
+        for (int i = 0; i < instructions; i++)
+            computer.completeInstruction();
+    }
+
+    // completeInstruction() reports every step to the listener
+    static class Quiet implements BasicComputerListener {
+
+        public boolean onMemoryChange(int address, short value) {
+            return true;
+        }
+
+        public boolean onRegisterChange(Register register, short value) {
+            return true;
+        }
+
+        public boolean onFlagChange() {
+            return true;
+        }
+
+        public boolean onEveryThingChanging() {
+            return true;
+        }
+
+        public boolean onRunProgress(long instructionsRetired, long cyclesElapsed) {
+            return true;
+        }
+
+        public boolean onBreakpoint(int kind, int address) {
+            return true;
+        }
+    }
+
+    @Test
+    void startsWithEveryFlagClear() {
+        BasicComputer computer = computer(new short[4096]);
+        assertEquals(0, computer.getFlags());
+        assertFalse(computer.isStopped() || computer.getIEN() || computer.getFGI() || computer.getFGO()
+                || computer.getE() || computer.getCarryBit() || computer.getI() || computer.getR());
+    }
+
+    @Test
+    void settersChangeOnlyTheirFlag() {
+        BasicComputer computer = computer(new short[4096]);
+
+        // every order of going through the eight combinations, from every combination before it
+        for (int from = 0; from < 8; from++) {
+            for (int to = 0; to < 8; to++) {
+                set(computer, from);
+                set(computer, to);
+
+                assertEquals((to & 1) != 0, computer.getIEN());
+                assertEquals((to & 2) != 0, computer.getFGI());
+                assertEquals((to & 4) != 0, computer.getFGO());
+                assertEquals((to & 1) * IEN | (to >> 1 & 1) * FGI | (to >> 2 & 1) * FGO, computer.getFlags());
+            }
+        }
+    }
+
+    private static void set(BasicComputer computer, int flags) {
+        computer.setIEN(flags & 1);
+        computer.setFGI(flags >> 1 & 1);
+        computer.setFGO(flags >> 2 & 1);
+    }
+
+    @Test
+    void settersTakeAnyNonZeroValueAsSet() {
+        BasicComputer computer = computer(new short[4096]);
+
+        assertTrue(computer.setFGI(2));
+        assertTrue(computer.getFGI());
+        assertTrue(computer.setFGI(-1));
+        assertTrue(computer.getFGI());
+        assertTrue(computer.setFGI(0));
+        assertFalse(computer.getFGI());
+    }
+
+    @Test
+    void restoreBringsBackEveryFlagCombination() {
+        BasicComputer computer = computer(new short[4096]);
+        Snapshot snapshot = computer.snapshot();
+
+        for (int flags = 0; flags < 256; flags++) {
+            snapshot.flags = (byte) flags;
+            computer.restore(snapshot);
+
+            assertEquals((byte) flags, computer.getFlags());
+            assertEquals((flags & S) != 0, computer.isStopped());
+            assertEquals((flags & IEN) != 0, computer.getIEN());
+            assertEquals((flags & FGI) != 0, computer.getFGI());
+            assertEquals((flags & FGO) != 0, computer.getFGO());
+            assertEquals((flags & E) != 0, computer.getE());
+            assertEquals((flags & CARRY) != 0, computer.getCarryBit());
+            assertEquals((flags & I) != 0, computer.getI());
+            assertEquals((flags & 0b10000000) != 0, computer.getR());
+        }
+    }
+
+    @Test
+    void cmeAndCleDriveE() {
+        BasicComputer computer = computer(new short[4096], 0x7100, 0x7100, 0x7100, 0x7400); // CME CME CME CLE
+
+        step(computer, 1);
+        assertTrue(computer.getE());
+        assertEquals(E, computer.getFlags());
+        step(computer, 1);
+        assertFalse(computer.getE());
+        step(computer, 1);
+        assertTrue(computer.getE());
+        step(computer, 1);
+        assertFalse(computer.getE());
+        assertEquals(0, computer.getFlags());
+    }
+
+    @Test
+    void addSetsCarryAndEOnlyOnOverflow() {
+        // LDA 10, ADD 10, STA 12, ADD 11, STA 13
+        short[] memory = new short[4096];
+        memory[0x10] = (short) 0x8000;
+        memory[0x11] = 1;
+        BasicComputer computer = computer(memory, 0x2010, 0x1010, 0x3012, 0x1011, 0x3013);
+
+        step(computer, 3);
+        assertEquals(0, computer.getMemory(0x12));
+        assertTrue(computer.getE());
+        assertTrue(computer.getCarryBit());
+        assertEquals(E | CARRY, computer.getFlags());
+
+        step(computer, 2);
+        assertEquals(1, computer.getMemory(0x13));
+        assertFalse(computer.getE());
+        assertFalse(computer.getCarryBit());
+    }
+
+    @Test
+    void incCarriesOutOfFFFF() {
+        // CMA, INC, STA 10, INC, STA 11
+        short[] memory = new short[4096];
+        memory[0x10] = -1;
+        BasicComputer computer = computer(memory, 0x7200, 0x7020, 0x3010, 0x7020, 0x3011);
+
+        step(computer, 3);
+        assertEquals(0, computer.getMemory(0x10));
+        assertTrue(computer.getE());
+        assertTrue(computer.getCarryBit());
+
+        step(computer, 2);
+        assertEquals(1, computer.getMemory(0x11));
+        assertFalse(computer.getE());
+        assertFalse(computer.getCarryBit());
+    }
+
+    @Test
+    void circulateGoesThroughE() {
+        // INC, CIR, CIR, STA 10, CIL, CIL, STA 11
+        short[] memory = new short[4096];
+        BasicComputer computer = computer(memory, 0x7020, 0x7080, 0x7080, 0x3010, 0x7040, 0x7040, 0x3011);
+
+        step(computer, 2);
+        assertTrue(computer.getE());
+        step(computer, 2);
+        assertEquals((short) 0x8000, computer.getMemory(0x10));
+        assertFalse(computer.getE());
+        step(computer, 1);
+        assertTrue(computer.getE());
+        step(computer, 2);
+        assertEquals(1, computer.getMemory(0x11));
+        assertFalse(computer.getE());
+    }
+
+    @Test
+    void szeSkipsOnlyWhileEIsClear() {
+        // SZE, INC, CME, SZE, INC, STA 10: only the second INC runs
+        short[] memory = new short[4096];
+        BasicComputer computer = computer(memory, 0x7002, 0x7020, 0x7100, 0x7002, 0x7020, 0x3010);
+
+        step(computer, 5);
+        assertEquals(1, computer.getMemory(0x10));
+    }
+
+    @Test
+    void iFollowsTheLastInstruction() {
+        BasicComputer computer = computer(new short[4096], 0xA010, 0x2010, 0xA010, 0x7200); // LDA 10 I, LDA 10, ..
+
+        step(computer, 1);
+        assertTrue(computer.getI());
+        assertEquals(I, computer.getFlags());
+        step(computer, 1);
+        assertFalse(computer.getI());
+        step(computer, 1);
+        assertTrue(computer.getI());
+        step(computer, 1); // CMA
+        assertFalse(computer.getI());
+    }
+
+    @Test
+    void hltSetsSAndStopsTheComputer() {
+        BasicComputer computer = computer(new short[4096], 0x7001, 0x7020); // HLT INC
+
+        step(computer, 1);
+        assertTrue(computer.isStopped());
+        assertEquals(S, computer.getFlags());
+        assertEquals(0, computer.completeInstruction());
+        assertEquals(0, computer.run(10));
+        assertEquals(S, computer.getFlags());
+    }
+
+    @Test
+    void ionAndIofDriveIen() {
+        BasicComputer computer = computer(new short[4096], 0xF080, 0xF040); // ION IOF
+
+        step(computer, 1);
+        assertTrue(computer.getIEN());
+        assertEquals(IEN | I, computer.getFlags()); // I is bit 15 of IR, set for every I/O instruction
+        step(computer, 1);
+        assertFalse(computer.getIEN());
+        assertEquals(I, computer.getFlags());
+    }
+
+    @Test
+    void skiAndSkoSkipOnTheirFlag() {
+        // SKI, INC, SKO, INC with both flags clear, then SKI, INC, SKO, INC, STA 10 with both set
+        short[] memory = new short[4096];
+        BasicComputer computer = computer(memory, 0xF200, 0x7020, 0xF100, 0x7020, 0xF200, 0x7020, 0xF100, 0x7020,
+                0x3010);
+
+        step(computer, 4);
+        computer.setFGI(1);
+        computer.setFGO(1);
+        step(computer, 3);
+        assertEquals(2, computer.getMemory(0x10));
+    }
+
+    @Test
+    void inpTakesInprAndClearsFgi() {
+        short[] memory = new short[4096];
+        BasicComputer computer = computer(memory, 0x7200, 0xF800, 0x3010); // CMA, INP, STA 10
+
+        computer.setINPR((byte) 0x41);
+        computer.setFGI(1);
+        step(computer, 3);
+        assertEquals((short) 0xFF41, computer.getMemory(0x10));
+        assertFalse(computer.getFGI());
+    }
+
+    @Test
+    void outTakesTheLowByteAndClearsFgo() {
+        short[] memory = new short[4096];
+        memory[0x10] = 0x1242;
+        BasicComputer computer = computer(memory, 0x2010, 0xF400, 0x3011); // LDA 10, OUT, STA 11
+
+        computer.setFGO(1);
+        step(computer, 3);
+        assertEquals(0x42, computer.getOUTR());
+        assertFalse(computer.getFGO());
+        assertEquals(0x1242, computer.getMemory(0x11));
+    }
+
+    @Test
+    void interruptCycleSavesPcAndClearsIen() {
+        // BUN 3, INC, STA 10, ION, INC
+        short[] memory = new short[4096];
+        BasicComputer computer = computer(memory, 0x4003, 0x7020, 0x3010, 0xF080, 0x7020);
+
+        computer.setFGI(1);
+        step(computer, 2); // BUN, ION
+        assertTrue(computer.getIEN());
+        step(computer, 1); // the interrupt cycle instead of INC at 4
+        assertEquals(4, computer.getMemory(0));
+        assertFalse(computer.getIEN());
+        assertFalse(computer.getR());
+        assertTrue(computer.getFGI());
+
+        step(computer, 2); // INC at 1 and STA, no second interrupt with IEN clear
+        assertEquals(1, computer.getMemory(0x10));
+    }
+}
@@ -0,0 +1,142 @@
+package Emulator;
+
+import static Emulator.FlagTest.computer;
+import static Emulator.FlagTest.step;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import Debugger.Logger;
+
+// What each kind of instruction leaves in AC and memory, and the same registers, memory, flags and counts
+// whichever way a program is run: one completeInstruction() at a time, run(), observed in batches or translated
+class RegisterTest {
+
+    @BeforeAll
+    static void quiet() {
+        Logger.isLogging = false;
+    }
+
+    @Test
+    void memoryReferenceLoadsAndStores() {
+        // LDA 10, AND 11, ADD 12 I, STA 13
+        short[] memory = new short[4096];
+        memory[0x10] = 0x0FF0;
+        memory[0x11] = 0x3C3C;
+        memory[0x12] = 0x0014; // through the pointer at 12 to 14
+        memory[0x14] = 1;
+        BasicComputer computer = computer(memory, 0x2010, 0x0011, 0x9012, 0x3013);
+
+        step(computer, 4);
+        assertEquals(0x0C31, computer.getMemory(0x13));
+    }
+
+    @Test
+    void bunAndBsaJump() {
+        // BUN 10 ... 10: BSA 20, STA 30 ... 20: return address, INC, BUN 20 I
+        short[] memory = new short[4096];
+        memory[0x10] = 0x5020;
+        memory[0x11] = 0x3030;
+        memory[0x21] = 0x7020;
+        memory[0x22] = (short) 0xC020;
+        BasicComputer computer = computer(memory, 0x4010);
+
+        step(computer, 5);
+        assertEquals(0x11, computer.getMemory(0x20));
+        assertEquals(1, computer.getMemory(0x30));
+    }
+
+    @Test
+    void iszSkipsOnlyWhenTheWordBecomesZero() {
+        // ISZ 10, ISZ 10, INC, ISZ 10, STA 11 with 10 holding -2: the INC is skipped
+        short[] memory = new short[4096];
+        memory[0x10] = -2;
+        memory[0x11] = -1;
+        BasicComputer computer = computer(memory, 0x6010, 0x6010, 0x7020, 0x6010, 0x3011);
+
+        step(computer, 4);
+        assertEquals(1, computer.getMemory(0x10));
+        assertEquals(0, computer.getMemory(0x11));
+    }
+
+    @Test
+    void registerInstructionsKeepAcSixteenBits() {
+        // CMA, STA 10, CLA, CMA, INC, STA 11
+        short[] memory = new short[4096];
+        memory[0x11] = -1;
+        BasicComputer computer = computer(memory, 0x7200, 0x3010, 0x7800, 0x7200, 0x7020, 0x3011);
+
+        step(computer, 6);
+        assertEquals((short) 0xFFFF, computer.getMemory(0x10));
+        assertEquals(0, computer.getMemory(0x11));
+    }
+
+    @Test
+    void acSkipsTestTheSignAndZero() {
+        // SPA, SNA and SZA with AC = 0, then CMA and the same with AC = -1, each in front of its own ISZ
+        short[] memory = new short[4096];
+        BasicComputer computer = computer(memory, 0x7010, 0x6020, 0x7008, 0x6021, 0x7004, 0x6022, 0x7200,
+                0x7010, 0x6023, 0x7008, 0x6024, 0x7004, 0x6025, 0x7001);
+
+        computer.runUntilHalt();
+        assertArrayEquals(new short[] { 0, 1, 0, 1, 0, 1 }, Arrays.copyOfRange(computer.dumpMemory(), 0x20, 0x26));
+    }
+
+    @Test
+    void pcWrapsAroundTheMemory() {
+        // SZA, STA 10, BUN FFF ... FFF: INC, back to the SZA at 0
+        short[] memory = new short[4096];
+        memory[0xFFF] = 0x7020;
+        BasicComputer computer = computer(memory, 0x7004, 0x3010, 0x4FFF);
+
+        step(computer, 5);
+        assertEquals(1, computer.getMemory(0x10));
+    }
+
+    // ADD overflows, CIL / CIR through E, SZE, a subroutine, an indirect pointer and ISZ, 3000 times round
+    private static final int[] MIXED = {
+            0x2014, 0x1015, 0x3014, 0x7040, 0x7100, 0x3016, 0x7080, 0x7002, // START: LDA A .. SZE
+            0x500F, 0xA018, 0x7020, 0xB018, 0x6019, 0x4000, 0x7001, // BSA SUB .. HLT
+            0x0000, 0x7200, 0x1014, 0x3017, 0xC00F, // SUB: return address, CMA, ADD A, STA D, BUN SUB I
+            0x1234, 0x9E37, 0x0000, 0x0000, 0x0040, 0xF448 }; // A, B, C, D, PTR -> 40, CNT = -3000
+
+    @Test
+    void everyWayOfRunningEndsInTheSameState() {
+        BasicComputer stepped = computer(new short[4096], MIXED);
+        while (!stepped.isStopped())
+            stepped.completeInstruction();
+
+        BasicComputer run = computer(new short[4096], MIXED);
+        run.runUntilHalt();
+
+        BasicComputer observed = computer(new short[4096], MIXED);
+        observed.setObserving(true);
+        observed.setChangeInterval(7);
+        observed.runUntilHalt();
+
+        assertEquals(3000, stepped.getMemory(0x40));
+        assertSameState(stepped, run);
+        assertSameState(stepped, observed);
+
+        BasicComputer translated = computer(new short[4096], MIXED);
+        assumeTrue(translated.setTranslation(true), "no system Java compiler to translate with");
+        translated.runUntilHalt();
+
+        assertSameState(stepped, translated);
+    }
+
+    private static void assertSameState(BasicComputer expected, BasicComputer actual) {
+        for (Register register : Register.values())
+            assertEquals(expected.getRegister(register), actual.getRegister(register), register.name());
+        assertEquals(expected.getFlags(), actual.getFlags());
+        assertEquals(expected.getOUTR(), actual.getOUTR());
+        assertEquals(expected.getInstructionsRetired(), actual.getInstructionsRetired());
+        assertEquals(expected.getCyclesElapsed(), actual.getCyclesElapsed());
+        assertArrayEquals(expected.dumpMemory(), actual.dumpMemory());
+    }
+}